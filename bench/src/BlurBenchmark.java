@@ -0,0 +1,74 @@
+package src;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the blur effects, over the Creek50 to Creek450
+ * 	pictures and several blur radii. This replaces the hand-timed loops of
+ * 	PictureTest.testRunTime and testRunTimeThreshold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlurBenchmark
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Side of the Creek picture to use, in pixels.
+	 */
+	@Param({"50", "150", "250", "350", "450"})
+	public int size;
+
+	/**
+	 * Blur threshold (radius) to use.
+	 */
+	@Param({"1", "3", "5", "10", "25"})
+	public int radius;
+
+	/**
+	 * The picture to blur.
+	 */
+	private Picture picture;
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Loads the picture for the current size.
+	 */
+	@Setup(Level.Trial)
+	public void load() {
+		picture = PictureBenchmark.loadCreek(size);
+	}
+
+	@Benchmark
+	public Picture blur() { return picture.blur(radius); }
+
+	@Benchmark
+	public Picture boxBlur() { return picture.boxBlur(radius); }
+
+	@Benchmark
+	public Picture gaussianBlur() { return picture.gaussianBlur(radius / 3.0); }
+
+	@Benchmark
+	public Picture fastGaussianBlur() {
+		return picture.fastGaussianBlur(radius / 3.0);
+	}
+
+} // End of BlurBenchmark class.
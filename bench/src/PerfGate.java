@@ -0,0 +1,80 @@
+package src;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Properties;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Performance regression gate. Runs the blur and showEdges benchmarks and
+ * 	exits with status 1 if either one's throughput is below the budget
+ * 	given in a properties file, such as bench/perf-budget.properties.
+ *
+ * The properties file holds the picture size and blur radius to measure,
+ * 	and the minimum operations per second of each benchmark, keyed by
+ * 	the benchmark's class and method name, e.g. BlurBenchmark.blur.
+ */
+public class PerfGate
+{
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Runs the gate.
+	 *
+	 * @param args The path of the budget properties file.
+	 */
+	public static void main(String[] args) throws IOException,
+			RunnerException {
+		if (args.length != 1) {
+			System.err.println("Usage: PerfGate <budget.properties>");
+			System.exit(2);
+		}
+		Properties budget = new Properties();
+		InputStream in = new FileInputStream(args[0]);
+		try {
+			budget.load(in);
+		} finally {
+			in.close();
+		}
+
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.include(BlurBenchmark.class.getName() + ".blur$")
+				.include(PictureBenchmark.class.getName() + ".showEdges$")
+				.param("size", budget.getProperty("size", "450"))
+				.param("radius", budget.getProperty("radius", "5"));
+		String picturesDir = System.getProperty("pictures.dir");
+		if (picturesDir != null)
+			builder.jvmArgsAppend("-Djava.awt.headless=true",
+					"-Dpictures.dir=" + picturesDir);
+		else
+			builder.jvmArgsAppend("-Djava.awt.headless=true");
+		Options options = builder.build();
+
+		Collection<RunResult> results = new Runner(options).run();
+		boolean failed = false;
+		for (RunResult result : results) {
+			String benchmark = result.getParams().getBenchmark();
+			String key = benchmark.substring(benchmark.indexOf('.') + 1);
+			String minimum = budget.getProperty(key);
+			double score = result.getPrimaryResult().getScore();
+			if (minimum == null) {
+				System.out.printf("%s: %.1f ops/s (no budget)%n", key, score);
+				continue;
+			}
+			boolean passed = score >= Double.parseDouble(minimum);
+			System.out.printf("%s: %.1f ops/s, budget %s ops/s: %s%n", key,
+					score, minimum, passed ? "ok" : "REGRESSION");
+			failed |= !passed;
+		}
+		if (failed || results.isEmpty())
+			System.exit(1);
+	}
+
+} // End of PerfGate class.
@@ -0,0 +1,132 @@
+package src;
+import java.awt.Color;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for every Picture effect, run over the Creek50 to
+ * 	Creek450 pictures so that the results show how each effect scales with
+ * 	the size of the picture. Blur, whose cost also depends on its
+ * 	threshold, is measured separately in BlurBenchmark.
+ *
+ * Build and run from the project directory with
+ *
+ * 	mvn -Pbench package exec:exec
+ *
+ * 	which reports throughput in operations per second and, through the
+ * 	GC profiler, the allocation rate of each effect.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PictureBenchmark
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Side of the Creek picture to use, in pixels.
+	 */
+	@Param({"50", "100", "150", "200", "250", "300", "350", "400", "450"})
+	public int size;
+
+	/**
+	 * The picture every effect is applied to.
+	 */
+	private Picture picture;
+
+	/**
+	 * A different picture of the same size, used as chromaKey's background.
+	 */
+	private Picture background;
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Loads the pictures for the current size.
+	 */
+	@Setup(Level.Trial)
+	public void load() {
+		picture = loadCreek(size);
+		background = picture.flip(Picture.VERTICAL);
+	}
+
+	/**
+	 * Loads CreekN.bmp from the Pictures directory, which is looked for in
+	 * 	the directory named by the pictures.dir system property, then in
+	 * 	Pictures and ../Pictures.
+	 *
+	 * @param size The side of the picture to load.
+	 *
+	 * @return The loaded picture.
+	 */
+	static Picture loadCreek(int size) {
+		String name = "Creek" + size + ".bmp";
+		String[] dirs = {System.getProperty("pictures.dir"), "Pictures",
+				"../Pictures"};
+		for (String dir : dirs) {
+			if (dir != null && new File(dir, name).canRead())
+				return new Picture(new File(dir, name).getPath());
+		}
+		throw new IllegalStateException("cannot find " + name
+				+ "; set -Dpictures.dir to the Pictures directory");
+	}
+
+	@Benchmark
+	public Picture grayscale() { return picture.grayscale(); }
+
+	@Benchmark
+	public Picture negate() { return picture.negate(); }
+
+	@Benchmark
+	public Picture lighten() { return picture.lighten(30); }
+
+	@Benchmark
+	public Picture showEdges() { return picture.showEdges(20); }
+
+	@Benchmark
+	public Picture rotate1() { return picture.rotate(1); }
+
+	@Benchmark
+	public Picture rotate3() { return picture.rotate(3); }
+
+	@Benchmark
+	public Picture flipHorizontal() {
+		return picture.flip(Picture.HORIZONTAL);
+	}
+
+	@Benchmark
+	public Picture flipForwardDiagonal() {
+		return picture.flip(Picture.FORWARD_DIAGONAL);
+	}
+
+	@Benchmark
+	public Picture chromaKey() {
+		return picture.chromaKey(size / 2, size / 2, background, 30);
+	}
+
+	@Benchmark
+	public Picture paintBucket() {
+		return picture.paintBucket(size / 2, size / 2, 30, Color.green);
+	}
+
+	@Benchmark
+	public Picture convertToAscii() { return picture.convertToAscii(); }
+
+} // End of PictureBenchmark class.
@@ -0,0 +1,116 @@
+package src;
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks comparing the two orders a picture can be walked in.
+ * 	columnMajor reads every pixel with x in the outer loop, as Picture's
+ * 	loops used to, so that consecutive reads are a whole row apart in
+ * 	the raster; rowMajor visits the same pixels with forEachPixel, in the
+ * 	order they are stored. The remaining benchmarks time the methods that
+ * 	were moved over to row-major traversal.
+ *
+ * Run over the Creek size ladder with
+ *
+ * 	mvn -Pbench package exec:exec -Djmh.args=TraversalBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Side of the Creek picture to use, in pixels.
+	 */
+	@Param({"50", "100", "150", "200", "250", "300", "350", "400", "450"})
+	public int size;
+
+	/**
+	 * The picture to walk.
+	 */
+	private Picture picture;
+
+	/**
+	 * A copy of the picture, for equals.
+	 */
+	private Picture copy;
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Loads the pictures for the current size.
+	 */
+	@Setup(Level.Trial)
+	public void load() {
+		picture = PictureBenchmark.loadCreek(size);
+		copy = new Picture(picture);
+	}
+
+	@Benchmark
+	public int columnMajor() {
+		int sum = 0;
+		for (int x = 0; x < picture.getWidth(); x++) {
+			for (int y = 0; y < picture.getHeight(); y++)
+				sum += picture.getBasicPixel(x, y);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int rowMajor() {
+		final int[] sum = new int[1];
+		picture.forEachPixel(new SimplePicture.PixelVisitor() {
+			public void visit(int x, int y, int value) {
+				sum[0] += value;
+			}
+		});
+		return sum[0];
+	}
+
+	@Benchmark
+	public Picture flipVertical() {
+		return picture.flip(Picture.VERTICAL);
+	}
+
+	@Benchmark
+	public Picture copyPicture() {
+		return new Picture(picture);
+	}
+
+	@Benchmark
+	public Picture setAllPixelsToAColor() {
+		Picture result = new Picture(size, size);
+		result.setAllPixelsToAColor(Color.blue);
+		return result;
+	}
+
+	@Benchmark
+	public boolean equalsCopy() {
+		return picture.equals(copy);
+	}
+
+	@Benchmark
+	public Color averagePatch() {
+		return picture.averagePatch(size / 2, size / 2, 10);
+	}
+
+} // End of TraversalBenchmark class.
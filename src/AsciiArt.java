@@ -0,0 +1,212 @@
+package src;
+import java.util.Arrays;
+
+/**
+ * Turns pictures into ASCII art, as Picture.convertToAscii does. The
+ * 	picture is cut into chunks of CHUNK_WIDTH by CHUNK_HEIGHT pixels, and
+ * 	each chunk is replaced by the glyph of a character that is about as
+ * 	dark as the chunk's average gray value.
+ *
+ * The glyphs are loaded once, the first time they are needed, into an
+ * 	atlas of packed pixel arrays, together with a table giving the glyph
+ * 	for each of the 256 gray values. The atlas is built by the class
+ * 	initializer of a holder class, so it is safe to use from several
+ * 	threads at once. Each row of chunks is converted in one pass that
+ * 	sums the gray values of its pixels straight from the raster, without
+ * 	making a grayscale copy, and glyphs are copied into the result a row
+ * 	of pixels at a time.
+ *
+ * A row of chunks is summed before any glyph is copied into it, and the
+ * 	rows of chunks do not overlap, so convertInPlace can write the glyphs
+ * 	straight over the picture without any buffer.
+ */
+public class AsciiArt
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Width of a chunk, and of each glyph, in pixels.
+	 */
+	public static final int CHUNK_WIDTH = 10;
+
+	/**
+	 * Height of a chunk, and of each glyph, in pixels.
+	 */
+	public static final int CHUNK_HEIGHT = 20;
+
+	/**
+	 * Range of gray values mapped to each glyph, from darkest to lightest.
+	 */
+	private static final int GRAY_STEP = 19;
+
+	/**
+	 * Files holding the glyphs, from darkest to lightest. Gray values past
+	 * 	the end of the list use the last glyph.
+	 */
+	private static final String[] GLYPH_FILES = {"hash.bmp", "at.bmp",
+		"ampersand.bmp", "dollar.bmp", "percent.bmp", "bar.bmp",
+		"exclamation.bmp", "semicolon.bmp", "colon.bmp", "apostrophe.bmp",
+		"grave.bmp", "dot.bmp", "space.bmp"};
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Converts a picture into ASCII art.
+	 *
+	 * @param picture The Picture to convert. It is not modified.
+	 *
+	 * @return A new Picture of the same size holding the ASCII art.
+	 * 	Chunks cut off by the right or bottom edge are averaged over the
+	 * 	pixels they have, and get the top left part of their glyph.
+	 */
+	public static Picture convert(Picture picture) {
+		Picture result = new Picture(picture.getWidth(), picture.getHeight());
+		convert(picture.getRaster(), result.getRaster(), picture.getWidth(),
+				picture.getHeight(), false);
+		return result;
+	}
+
+	/**
+	 * Converts a picture into ASCII art in place; see convert(Picture).
+	 * 	Each pixel keeps its alpha.
+	 *
+	 * @param picture The Picture to convert.
+	 *
+	 * @return The picture.
+	 */
+	public static Picture convertInPlace(Picture picture) {
+		convert(picture.getRaster(), picture.getRaster(), picture.getWidth(),
+				picture.getHeight(), true);
+		picture.pixelsChanged();
+		return picture;
+	}
+
+	/**
+	 * Converts a packed pixel array into ASCII art.
+	 *
+	 * @param source The pixels to convert, in row-major order.
+	 * @param target The array to write the ASCII art to. It may be source.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param keepAlpha Whether each pixel of target keeps its alpha;
+	 * 	otherwise it is cleared, as the glyphs have none.
+	 */
+	private static void convert(final int[] source, final int[] target,
+			final int width, final int height, final boolean keepAlpha) {
+		final int[][] glyphForGray = Atlas.GLYPH_FOR_GRAY;
+		final int chunkColumns = (width + CHUNK_WIDTH - 1) / CHUNK_WIDTH;
+		int chunkRows = (height + CHUNK_HEIGHT - 1) / CHUNK_HEIGHT;
+
+		// Each band row is a row of chunks, CHUNK_HEIGHT rows of pixels.
+		BandExecutor.run(width * CHUNK_HEIGHT, chunkRows,
+				new BandExecutor.Band() {
+			public void run(int startRow, int endRow) {
+				int[] sums = new int[chunkColumns];
+				for (int chunkRow = startRow; chunkRow < endRow; chunkRow++)
+				{
+					int top = chunkRow * CHUNK_HEIGHT;
+					int rows = Math.min(CHUNK_HEIGHT, height - top);
+
+					// Sum the gray values of each chunk in one pass.
+					Arrays.fill(sums, 0);
+					for (int y = top; y < top + rows; y++)
+					{
+						int index = y * width;
+						for (int chunk = 0; chunk < chunkColumns; chunk++)
+						{
+							int end = y * width + Math.min(
+									(chunk + 1) * CHUNK_WIDTH, width);
+							int sum = 0;
+							for (; index < end; index++)
+							{
+								int value = source[index];
+								sum += ((value >> 16 & 0xff)
+										+ (value >> 8 & 0xff) + (value & 0xff))
+										/ 3;
+							}
+							sums[chunk] += sum;
+						}
+					}
+
+					// Copy in the glyph for each chunk's average.
+					for (int chunk = 0; chunk < chunkColumns; chunk++)
+					{
+						int left = chunk * CHUNK_WIDTH;
+						int columns = Math.min(CHUNK_WIDTH, width - left);
+						int[] glyph = glyphForGray[sums[chunk]
+								/ (columns * rows)];
+						for (int y = 0; y < rows; y++)
+						{
+							int from = y * CHUNK_WIDTH;
+							int to = (top + y) * width + left;
+							if (!keepAlpha) {
+								System.arraycopy(glyph, from, target, to,
+										columns);
+								continue;
+							}
+							for (int x = 0; x < columns; x++)
+								target[to + x] = (target[to + x] & 0xff000000)
+										| glyph[from + x];
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param gray A gray value, from 0 to 255.
+	 *
+	 * @return A copy of the glyph used for chunks with that average gray
+	 * 	value, CHUNK_WIDTH by CHUNK_HEIGHT packed RGB values in row-major
+	 * 	order.
+	 */
+	public static int[] glyphFor(int gray) {
+		return Atlas.GLYPH_FOR_GRAY[gray].clone();
+	}
+
+	////////////////////////////// Inner Classes //////////////////////////////
+
+	/**
+	 * Holds the glyphs. The JVM runs its initializer once, the first time
+	 * 	convert needs it, and makes the arrays it builds visible to every
+	 * 	thread.
+	 */
+	private static class Atlas
+	{
+		/**
+		 * The glyphs, in the order of GLYPH_FILES.
+		 */
+		static final int[][] GLYPHS = loadGlyphs();
+
+		/**
+		 * The glyph for each gray value.
+		 */
+		static final int[][] GLYPH_FOR_GRAY = new int[256][];
+
+		static {
+			for (int gray = 0; gray < GLYPH_FOR_GRAY.length; gray++)
+				GLYPH_FOR_GRAY[gray] = GLYPHS[Math.min(gray / GRAY_STEP,
+						GLYPHS.length - 1)];
+		}
+
+		/**
+		 * @return The glyphs of GLYPH_FILES, as CHUNK_WIDTH by CHUNK_HEIGHT
+		 * 	packed RGB values.
+		 */
+		private static int[][] loadGlyphs() {
+			int[][] glyphs = new int[GLYPH_FILES.length][];
+			for (int i = 0; i < glyphs.length; i++)
+			{
+				int[] glyph = Picture.loadPicture(GLYPH_FILES[i]).getRegion(
+						0, 0, CHUNK_WIDTH, CHUNK_HEIGHT, null);
+				for (int j = 0; j < glyph.length; j++)
+					glyph[j] &= 0xffffff;
+				glyphs[i] = glyph;
+			}
+			return glyphs;
+		}
+	}
+
+} // End of AsciiArt class.
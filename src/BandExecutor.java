@@ -0,0 +1,187 @@
+package src;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a per-row operation over a picture, splitting the rows into bands
+ * 	that are processed concurrently on a shared ForkJoinPool. Pictures
+ * 	with fewer pixels than the parallel threshold are processed on the
+ * 	calling thread, so small images do not pay for the fork.
+ *
+ * Every band covers whole rows and bands never overlap, so an operation
+ * 	that only writes the pixels of the rows it is given produces exactly
+ * 	the same picture as running it over all rows in order.
+ *
+ * If the calling thread has a FilterProgress, each run counts as one pass:
+ * 	rows are reported to it as bands finish, and no new band is started
+ * 	once it has been cancelled.
+ */
+public class BandExecutor
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Default number of pixels below which pictures are processed on the
+	 * 	calling thread.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 256 * 1024;
+
+	/**
+	 * Number of pixels below which pictures are processed on the calling
+	 * 	thread.
+	 */
+	private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/**
+	 * Pool the bands run on.
+	 */
+	private static volatile ForkJoinPool pool = new ForkJoinPool();
+
+	/**
+	 * Number of pieces rows are reported in when a FilterProgress is
+	 * 	watching a picture processed on the calling thread.
+	 */
+	private static final int PROGRESS_STEPS = 32;
+
+	/////////////////////////////// Interfaces ////////////////////////////////
+
+	/**
+	 * An operation applied to a band of rows.
+	 */
+	public interface Band
+	{
+		/**
+		 * Processes the rows from startY (inclusive) to endY (exclusive).
+		 *
+		 * @param startY The first row of the band.
+		 * @param endY One past the last row of the band.
+		 */
+		void run(int startY, int endY);
+	}
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * @return The number of pixels below which pictures are processed on
+	 * 	the calling thread.
+	 */
+	public static int getParallelThreshold() { return parallelThreshold; }
+
+	/**
+	 * Sets the number of pixels below which pictures are processed on the
+	 * 	calling thread. Integer.MAX_VALUE turns parallel execution off.
+	 *
+	 * @param threshold The new threshold, in pixels.
+	 */
+	public static void setParallelThreshold(int threshold) {
+		if (threshold < 0)
+			throw new IllegalArgumentException("negative threshold");
+		parallelThreshold = threshold;
+	}
+
+	/**
+	 * @return The number of threads bands run on.
+	 */
+	public static int getParallelism() { return pool.getParallelism(); }
+
+	/**
+	 * Sets the number of threads bands run on, for runs started afterwards.
+	 * 	The previous pool is not shut down, since a run that has already
+	 * 	picked it may not have handed it its bands yet; its threads exit
+	 * 	on their own once they have been idle for a while.
+	 *
+	 * @param parallelism The number of threads to use.
+	 */
+	public static void setParallelism(int parallelism) {
+		pool = new ForkJoinPool(parallelism);
+	}
+
+	/**
+	 * Runs the band over all rows of a picture of the given size, and
+	 * 	returns once every row has been processed.
+	 *
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param band The operation to run.
+	 */
+	public static void run(int width, int height, Band band) {
+		long pixels = (long) width * height;
+		ForkJoinPool current = pool;
+		FilterProgress progress = FilterProgress.current();
+		if (progress != null) {
+			progress.checkCancelled();
+			progress.beginPass(height);
+		}
+		if (pixels < parallelThreshold || current.getParallelism() == 1
+				|| height < 2) {
+			if (progress == null) {
+				band.run(0, height);
+				return;
+			}
+			int step = Math.max(1, height / PROGRESS_STEPS);
+			for (int y = 0; y < height; y += step) {
+				progress.checkCancelled();
+				int endY = Math.min(y + step, height);
+				band.run(y, endY);
+				progress.rowsFinished(endY - y);
+			}
+			return;
+		}
+
+		// Aim for a few bands per thread so uneven bands balance out.
+		int bands = current.getParallelism() * 4;
+		int minRows = Math.max(1, height / bands);
+		RowTask task = new RowTask(band, 0, height, minRows, progress);
+		// Bands started from one of the pool's own threads fork into it
+		// directly; from any other thread, including those of other pools,
+		// they are handed to the pool so its parallelism limit holds.
+		if (ForkJoinTask.getPool() == current)
+			task.invoke();
+		else
+			current.invoke(task);
+	}
+
+	////////////////////////////// Inner Classes //////////////////////////////
+
+	/**
+	 * Splits a range of rows in half until it is small enough to run.
+	 */
+	private static class RowTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 0;
+
+		private final Band band;
+		private final int startY;
+		private final int endY;
+		private final int minRows;
+		private final FilterProgress progress;
+
+		RowTask(Band band, int startY, int endY, int minRows,
+				FilterProgress progress) {
+			this.band = band;
+			this.startY = startY;
+			this.endY = endY;
+			this.minRows = minRows;
+			this.progress = progress;
+		}
+
+		protected void compute() {
+			if (endY - startY <= minRows) {
+				if (progress == null) {
+					band.run(startY, endY);
+					return;
+				}
+				progress.checkCancelled();
+				band.run(startY, endY);
+				progress.rowsFinished(endY - startY);
+				return;
+			}
+			int middle = (startY + endY) >>> 1;
+			invokeAll(new RowTask(band, startY, middle, minRows, progress),
+					new RowTask(band, middle, endY, minRows, progress));
+		}
+	}
+
+} // End of BandExecutor class.
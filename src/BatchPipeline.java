@@ -0,0 +1,558 @@
+package src;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes, filters and encodes a list of picture files using a bounded
+ * 	amount of memory. Files go through three stages, each with its own
+ * 	threads: decoding with SimplePicture.loadOrFail, filtering, and
+ * 	encoding with SimplePicture.writeOrFail. The stages are joined by
+ * 	bounded queues, so while one picture is being filtered the next ones
+ * 	are being read and the previous ones written, and a stage that falls
+ * 	behind makes the stages before it wait.
+ *
+ * Queues bound the number of pictures waiting between stages, but not
+ * 	their size, so pictures are also admitted against a memory budget.
+ * 	Before a file is decoded its width and height are read from its
+ * 	header, and width * height * 4 bytes are reserved from the budget
+ * 	until the picture has been written. Decoding waits while the budget
+ * 	is used up, so a run of large pictures slows the decoders down
+ * 	instead of running out of heap. A picture larger than the whole
+ * 	budget is let in once nothing else is reserved.
+ *
+ * The filters' results borrow their rasters from a RasterPool and give
+ * 	them back once written. The free rasters the pool keeps come out of
+ * 	the same budget: a quarter of it, at most
+ * 	RasterPool.DEFAULT_MAX_POOLED_BYTES, is set aside for them, and only
+ * 	the rest is reserved for decoded pictures.
+ */
+public class BatchPipeline
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Bytes per memory budget permit. Permits are counted in kibibytes so
+	 * 	that budgets of more than 2 GB fit in a Semaphore.
+	 */
+	private static final int PERMIT_SIZE = 1024;
+
+	/**
+	 * The filter applied to every picture.
+	 */
+	private final PictureFilter filter;
+
+	/**
+	 * Directory the results are written to, under their input names.
+	 */
+	private final File outputDirectory;
+
+	/**
+	 * Number of threads decoding, and of threads encoding.
+	 */
+	private final int ioThreads;
+
+	/**
+	 * Number of threads applying the filter.
+	 */
+	private final int filterThreads;
+
+	/**
+	 * The memory budget, in permits.
+	 */
+	private final int budgetPermits;
+
+	/**
+	 * Pool the filters' results borrow their rasters from. They are given
+	 * 	back once written, for the results of later pictures of the same
+	 * 	size. The bytes it may keep are not part of budgetPermits.
+	 */
+	private final RasterPool rasterPool;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * @param filter The filter to apply to every picture.
+	 * @param outputDirectory The directory to write the results to.
+	 * @param ioThreads The number of threads decoding, and also the number
+	 * 	encoding.
+	 * @param filterThreads The number of threads applying the filter.
+	 * @param memoryBudget The most bytes of decoded pictures, and of free
+	 * 	rasters kept for the filters' results, to hold at once. The
+	 * 	filters need room for the results they are working on on top of
+	 * 	this.
+	 */
+	public BatchPipeline(PictureFilter filter, File outputDirectory,
+			int ioThreads, int filterThreads, long memoryBudget) {
+		if (ioThreads < 1 || filterThreads < 1)
+			throw new IllegalArgumentException("thread counts must be positive");
+		if (memoryBudget < PERMIT_SIZE)
+			throw new IllegalArgumentException("memory budget too small");
+		this.filter = filter;
+		this.outputDirectory = outputDirectory;
+		this.ioThreads = ioThreads;
+		this.filterThreads = filterThreads;
+		long pooledBytes = Math.min(Math.min(memoryBudget / 4,
+				memoryBudget - PERMIT_SIZE), RasterPool.DEFAULT_MAX_POOLED_BYTES);
+		this.budgetPermits = (int) Math.min(
+				(memoryBudget - pooledBytes) / PERMIT_SIZE, Integer.MAX_VALUE);
+		this.rasterPool = new RasterPool(pooledBytes);
+	}
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * @return A memory budget leaving room for the filters' results and
+	 * 	working copies: a quarter of the most heap the JVM will use.
+	 */
+	public static long defaultMemoryBudget() {
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/**
+	 * Reads the size of a picture from the header of its file, without
+	 * 	decoding it.
+	 *
+	 * @param file The picture file.
+	 *
+	 * @return The number of bytes the decoded picture takes up.
+	 *
+	 * @throws IOException If the file cannot be read or is not in a
+	 * 	supported format.
+	 */
+	public static long decodedSize(File file) throws IOException {
+		BmpCodec.Reader bmp = BmpCodec.Reader.open(file);
+		if (bmp != null) {
+			try {
+				return 4L * bmp.getWidth() * bmp.getHeight();
+			} finally {
+				bmp.close();
+			}
+		}
+
+		ImageInputStream in = ImageIO.createImageInputStream(file);
+		if (in == null)
+			throw new IOException(file + " could not be opened.");
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext())
+				throw new IOException(file
+						+ " is not in a supported image format.");
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in);
+				return 4L * reader.getWidth(0) * reader.getHeight(0);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Decodes, filters and encodes each file, and waits for them all.
+	 * 	Files that cannot be read or written are reported on System.err
+	 * 	and skipped.
+	 *
+	 * @param inputs The files to process.
+	 *
+	 * @return How many pictures each stage processed, and how fast.
+	 *
+	 * @throws InterruptedException If the calling thread is interrupted.
+	 */
+	public Report run(final List<File> inputs) throws InterruptedException {
+		final Report report = new Report();
+		final BlockingQueue<Job> decoded =
+				new ArrayBlockingQueue<Job>(2 * filterThreads);
+		final BlockingQueue<Job> filtered =
+				new ArrayBlockingQueue<Job>(2 * ioThreads);
+		final Budget budget = new Budget(budgetPermits);
+		report.budget = budget;
+		final AtomicInteger nextInput = new AtomicInteger();
+		long start = System.nanoTime();
+
+		Stage decode = new Stage("decode", ioThreads, report.decode, budget) {
+			Job take() {
+				int index = nextInput.getAndIncrement();
+				return index < inputs.size() ? new Job(inputs.get(index)) : null;
+			}
+
+			void process(Job job) throws IOException, InterruptedException {
+				long bytes = decodedSize(job.input);
+				int permits = (int) Math.min(budgetPermits,
+						(bytes + PERMIT_SIZE - 1) / PERMIT_SIZE);
+				budget.acquire(permits);
+				job.permits = permits;
+
+				Picture picture = new Picture(1, 1);
+				picture.loadOrFail(job.input.getPath());
+				job.picture = picture;
+			}
+
+			void pass(Job job) throws InterruptedException {
+				decoded.put(job);
+			}
+		};
+		Stage apply = new Stage("filter", filterThreads, report.filter,
+				budget) {
+			Job take() throws InterruptedException { return decoded.take(); }
+
+			void process(Job job) {
+				RasterPool previous = RasterPool.setCurrent(rasterPool);
+				try {
+					Picture result = filter.apply(job.picture);
+					if (result != job.picture)
+						job.picture.release();
+					job.picture = result;
+				} finally {
+					RasterPool.setCurrent(previous);
+				}
+			}
+
+			void pass(Job job) throws InterruptedException {
+				filtered.put(job);
+			}
+		};
+		Stage encode = new Stage("encode", ioThreads, report.encode, budget) {
+			Job take() throws InterruptedException { return filtered.take(); }
+
+			void process(Job job) throws IOException {
+				File output = new File(outputDirectory, job.input.getName());
+				job.picture.writeOrFail(output.getPath());
+			}
+
+			void pass(Job job) {
+				release(job);
+			}
+		};
+		decode.next = apply;
+		apply.next = encode;
+
+		decode.start();
+		apply.start();
+		encode.start();
+		try {
+			decode.join();
+			apply.join();
+			encode.join();
+		} finally {
+			decode.interrupt();
+			apply.interrupt();
+			encode.interrupt();
+		}
+		report.seconds = (System.nanoTime() - start) / 1e9;
+		report.total = inputs.size();
+		return report;
+	}
+
+	////////////////////////////// Inner Classes //////////////////////////////
+
+	/**
+	 * A file on its way through the stages.
+	 */
+	private static class Job
+	{
+		/**
+		 * Marks the end of the jobs passed to a stage.
+		 */
+		static final Job END = new Job(null);
+
+		final File input;
+		Picture picture;
+
+		/**
+		 * The memory budget permits reserved for the picture.
+		 */
+		int permits;
+
+		Job(File input) {
+			this.input = input;
+		}
+	}
+
+	/**
+	 * The memory budget, and how much of it has been in use.
+	 */
+	private static class Budget
+	{
+		private final Semaphore permits;
+		private final AtomicInteger inUse = new AtomicInteger();
+		private final AtomicInteger peak = new AtomicInteger();
+
+		Budget(int size) {
+			// Fair, so that a large picture waiting for room is not passed
+			// over forever by smaller ones.
+			permits = new Semaphore(size, true);
+		}
+
+		void acquire(int count) throws InterruptedException {
+			permits.acquire(count);
+			int now = inUse.addAndGet(count);
+			int before = peak.get();
+			while (now > before && !peak.compareAndSet(before, now))
+				before = peak.get();
+		}
+
+		void release(int count) {
+			inUse.addAndGet(-count);
+			permits.release(count);
+		}
+	}
+
+	/**
+	 * The threads of one stage, taking jobs from the stage before.
+	 */
+	private abstract class Stage
+	{
+		private final Thread[] threads;
+		private final AtomicInteger running;
+		private final StageReport report;
+		private final Budget budget;
+
+		/**
+		 * The stage the jobs go to next, or null.
+		 */
+		Stage next;
+
+		Stage(String name, int threadCount, StageReport report,
+				Budget budget) {
+			this.report = report;
+			this.budget = budget;
+			threads = new Thread[threadCount];
+			running = new AtomicInteger(threadCount);
+			for (int i = 0; i < threadCount; i++) {
+				threads[i] = new Thread(new Runnable() {
+					public void run() {
+						work();
+					}
+				}, "batch-" + name + "-" + (i + 1));
+			}
+		}
+
+		/**
+		 * @return The next job, or null or Job.END if there are no more.
+		 */
+		abstract Job take() throws InterruptedException;
+
+		/**
+		 * Does this stage's work on a job.
+		 */
+		abstract void process(Job job) throws Exception;
+
+		/**
+		 * Hands a job to the next stage.
+		 */
+		abstract void pass(Job job) throws InterruptedException;
+
+		/**
+		 * Drops a job's picture and gives back its share of the budget.
+		 */
+		void release(Job job) {
+			if (job.picture != null)
+				job.picture.release();
+			job.picture = null;
+			if (job.permits > 0) {
+				budget.release(job.permits);
+				job.permits = 0;
+			}
+		}
+
+		/**
+		 * Processes jobs until there are no more, then, if this is the last
+		 * 	thread of the stage to finish, tells the next stage.
+		 */
+		private void work() {
+			try {
+				processAll();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if (running.decrementAndGet() == 0 && next != null) {
+					try {
+						for (int i = 0; i < next.threads.length; i++)
+							pass(Job.END);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Processes jobs until there are no more.
+		 */
+		private void processAll() throws InterruptedException {
+			while (true) {
+				Job job = take();
+				if (job == null || job == Job.END)
+					break;
+				long start = System.nanoTime();
+				try {
+					process(job);
+				} catch (InterruptedException e) {
+					release(job);
+					throw e;
+				} catch (Exception e) {
+					report.failed(job.input, e);
+					release(job);
+					continue;
+				} catch (OutOfMemoryError e) {
+					report.failed(job.input, e);
+					release(job);
+					continue;
+				}
+				report.processed((long) job.picture.getWidth()
+						* job.picture.getHeight(), System.nanoTime() - start);
+				pass(job);
+			}
+		}
+
+		void start() {
+			for (Thread thread : threads)
+				thread.start();
+		}
+
+		void join() throws InterruptedException {
+			for (Thread thread : threads)
+				thread.join();
+		}
+
+		void interrupt() {
+			for (Thread thread : threads)
+				thread.interrupt();
+		}
+	}
+
+	/**
+	 * How much one stage got through.
+	 */
+	public static class StageReport
+	{
+		private final String name;
+		private final int threads;
+		private final AtomicInteger pictures = new AtomicInteger();
+		private final AtomicInteger failures = new AtomicInteger();
+		private final AtomicLong pixels = new AtomicLong();
+		private final AtomicLong nanos = new AtomicLong();
+
+		StageReport(String name, int threads) {
+			this.name = name;
+			this.threads = threads;
+		}
+
+		void processed(long pixelCount, long elapsed) {
+			pictures.incrementAndGet();
+			pixels.addAndGet(pixelCount);
+			nanos.addAndGet(elapsed);
+		}
+
+		void failed(File input, Throwable error) {
+			failures.incrementAndGet();
+			System.err.println(name + " failed for " + input + ": " + error);
+		}
+
+		/**
+		 * @return The number of pictures the stage finished.
+		 */
+		public int getPictures() { return pictures.get(); }
+
+		/**
+		 * @return The number of pictures the stage failed on.
+		 */
+		public int getFailures() { return failures.get(); }
+
+		/**
+		 * @return The total time the stage's threads spent working, in
+		 * 	seconds.
+		 */
+		public double getBusySeconds() { return nanos.get() / 1e9; }
+
+		/**
+		 * @return A line giving the stage's throughput.
+		 */
+		public String toString() {
+			double busy = Math.max(getBusySeconds(), 1e-9);
+			return String.format(Locale.ROOT,
+					"%-7s %6d pictures %9.1f Mpixels %8.2f s busy on %d"
+					+ " threads, %7.1f pictures/s %8.1f Mpixels/s",
+					name + ":", pictures.get(), pixels.get() / 1e6, busy,
+					threads, pictures.get() * threads / busy,
+					pixels.get() * threads / busy / 1e6);
+		}
+	}
+
+	/**
+	 * What a batch got through, stage by stage.
+	 */
+	public class Report
+	{
+		final StageReport decode = new StageReport("decode", ioThreads);
+		final StageReport filter = new StageReport("filter", filterThreads);
+		final StageReport encode = new StageReport("encode", ioThreads);
+		Budget budget;
+		double seconds;
+		int total;
+
+		/**
+		 * @return The report of the decoding stage.
+		 */
+		public StageReport getDecode() { return decode; }
+
+		/**
+		 * @return The report of the filtering stage.
+		 */
+		public StageReport getFilter() { return filter; }
+
+		/**
+		 * @return The report of the encoding stage.
+		 */
+		public StageReport getEncode() { return encode; }
+
+		/**
+		 * @return The number of pictures that could not be processed.
+		 */
+		public int getFailed() { return total - encode.getPictures(); }
+
+		/**
+		 * @return The time the whole batch took, in seconds.
+		 */
+		public double getSeconds() { return seconds; }
+
+		/**
+		 * @return The most bytes of the memory budget reserved at once.
+		 */
+		public long getPeakReservedBytes() {
+			return budget.peak.get() * (long) PERMIT_SIZE;
+		}
+
+		/**
+		 * @return The report, one line per stage and one for the batch.
+		 */
+		public String toString() {
+			String newline = System.getProperty("line.separator");
+			return decode + newline + filter + newline + encode + newline
+					+ String.format(Locale.ROOT,
+							"%d of %d pictures in %.2f s, %.1f pictures/s,"
+							+ " at most %.1f MB of %.1f MB budget in use",
+							encode.getPictures(), total, seconds,
+							encode.getPictures() / Math.max(seconds, 1e-9),
+							getPeakReservedBytes() / 1e6,
+							budgetPermits * (double) PERMIT_SIZE / 1e6)
+					+ newline;
+		}
+	}
+
+} // End of BatchPipeline class.
@@ -0,0 +1,236 @@
+package src;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Applies a chain of Picture effects to many files without a GUI, for
+ * 	example from the command line:
+ *
+ * 	java src.BatchRunner Pictures/ "grayscale,blur:3,showEdges:20" out/
+ *
+ * The files are run through a BatchPipeline, which decodes, filters and
+ * 	encodes them on separate threads within a memory budget. At the end,
+ * 	the number of pictures and pixels each stage got through, and how
+ * 	long it took, are reported.
+ *
+ * Filter chains are written as effect names separated by commas, each
+ * 	followed by a colon and its parameter if it takes one; see
+ * 	parseChain.
+ */
+public class BatchRunner
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Extensions of the files taken from an input directory.
+	 */
+	private static final List<String> IMAGE_EXTENSIONS =
+			Arrays.asList("bmp", "jpg", "jpeg", "png", "gif");
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Runs a batch from the command line.
+	 *
+	 * @param args The input directory or glob, the filter chain, the
+	 * 	output directory and, optionally, the number of filter threads and
+	 * 	the memory budget in megabytes.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3 || args.length > 5) {
+			System.err.println("usage: java src.BatchRunner <input directory"
+					+ " or glob> <filter chain> <output directory> [threads"
+					+ " [memory MB]]");
+			System.err.println("  e.g. java src.BatchRunner 'Pictures/*.bmp'"
+					+ " grayscale,blur:3,showEdges:20 out");
+			System.exit(2);
+		}
+
+		List<File> inputs = listInputs(args[0]);
+		int cores = Runtime.getRuntime().availableProcessors();
+		PictureFilter filter;
+		int threads;
+		long budget;
+		try {
+			filter = parseChain(args[1]);
+			threads = args.length >= 4 ? parsePositive(args[3], "threads")
+					: cores;
+			budget = args.length >= 5 ? parsePositive(args[4], "memory MB")
+					* 1000000L : BatchPipeline.defaultMemoryBudget();
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.exit(2);
+			return;
+		}
+		File output = new File(args[2]);
+		if (!output.isDirectory() && !output.mkdirs())
+			throw new IOException("cannot create " + output);
+
+		BatchPipeline pipeline = new BatchPipeline(filter, output,
+				Math.max(2, cores / 2), threads, budget);
+		BatchPipeline.Report report = pipeline.run(inputs);
+		System.out.print(report);
+		System.exit(report.getFailed() == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Turns a filter chain into a filter. The chain is a list of effects
+	 * 	separated by commas, applied in order. Each effect is the name of
+	 * 	a Picture method, followed by a colon and its parameter if it
+	 * 	takes one: grayscale, negate, lighten:n, darken:n, addRed:n,
+	 * 	addGreen:n, addBlue:n, blur:n, boxBlur:n, gaussianBlur:sigma,
+	 * 	fastGaussianBlur:sigma and showEdges:n.
+	 *
+	 * @param spec The filter chain, e.g. "grayscale,blur:3,showEdges:20".
+	 *
+	 * @return The filter applying the chain.
+	 *
+	 * @throws IllegalArgumentException If an effect is unknown or its
+	 * 	parameter is missing or not a number.
+	 */
+	public static PictureFilter parseChain(String spec) {
+		List<PictureFilter> filters = new ArrayList<PictureFilter>();
+		for (String step : spec.split(",")) {
+			step = step.trim();
+			if (step.length() == 0)
+				continue;
+			int colon = step.indexOf(':');
+			String name = colon < 0 ? step : step.substring(0, colon).trim();
+			String argument = colon < 0 ? null : step.substring(colon + 1).trim();
+			filters.add(parseFilter(name, argument));
+		}
+		if (filters.isEmpty())
+			throw new IllegalArgumentException("empty filter chain");
+		if (filters.size() == 1)
+			return filters.get(0);
+		return PictureFilter.chain(
+				filters.toArray(new PictureFilter[filters.size()]));
+	}
+
+	/**
+	 * @param name The name of an effect.
+	 * @param argument Its parameter, or null if none was given.
+	 *
+	 * @return The filter for the effect.
+	 */
+	private static PictureFilter parseFilter(String name, String argument) {
+		try {
+			if (name.equals("grayscale") || name.equals("negate")) {
+				if (argument != null)
+					throw new IllegalArgumentException(name
+							+ " takes no parameter");
+				return name.equals("grayscale") ? PictureFilter.grayscale()
+						: PictureFilter.negate();
+			}
+			if (argument == null)
+				throw new IllegalArgumentException(name + " needs a parameter");
+			if (name.equals("gaussianBlur"))
+				return PictureFilter.gaussianBlur(Double.parseDouble(argument));
+			if (name.equals("fastGaussianBlur"))
+				return PictureFilter.fastGaussianBlur(
+						Double.parseDouble(argument));
+
+			int value = Integer.parseInt(argument);
+			if (name.equals("lighten"))
+				return PictureFilter.lighten(value);
+			if (name.equals("darken"))
+				return PictureFilter.darken(value);
+			if (name.equals("addRed"))
+				return PictureFilter.addRed(value);
+			if (name.equals("addGreen"))
+				return PictureFilter.addGreen(value);
+			if (name.equals("addBlue"))
+				return PictureFilter.addBlue(value);
+			if (name.equals("blur"))
+				return PictureFilter.blur(value);
+			if (name.equals("boxBlur"))
+				return PictureFilter.boxBlur(value);
+			if (name.equals("showEdges"))
+				return PictureFilter.showEdges(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad parameter for " + name
+					+ ": " + argument);
+		}
+		throw new IllegalArgumentException("unknown effect: " + name);
+	}
+
+	/**
+	 * @param argument A command line argument.
+	 * @param name The name of the argument, for the error message.
+	 *
+	 * @return The argument as a positive number.
+	 *
+	 * @throws IllegalArgumentException If the argument is not a number
+	 * 	from 1 to Integer.MAX_VALUE.
+	 */
+	private static int parsePositive(String argument, String name) {
+		int value;
+		try {
+			value = Integer.parseInt(argument.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("bad " + name + ": " + argument);
+		}
+		if (value <= 0)
+			throw new IllegalArgumentException(name + " must be positive: "
+					+ argument);
+		return value;
+	}
+
+	/**
+	 * Lists the files to process.
+	 *
+	 * @param pattern A directory, whose image files are all taken, or a
+	 * 	path whose last part is a glob such as *.bmp, matched against
+	 * 	the names of the files in the directory before it.
+	 *
+	 * @return The files, sorted by name.
+	 *
+	 * @throws IOException If the directory cannot be read.
+	 */
+	public static List<File> listInputs(String pattern) throws IOException {
+		File file = new File(pattern);
+		File directory;
+		FileFilter accept;
+		if (file.isDirectory()) {
+			directory = file;
+			accept = new FileFilter() {
+				public boolean accept(File candidate) {
+					String name = candidate.getName();
+					int dot = name.lastIndexOf('.');
+					return dot >= 0 && IMAGE_EXTENSIONS.contains(
+							name.substring(dot + 1).toLowerCase(Locale.ROOT));
+				}
+			};
+		} else {
+			directory = file.getAbsoluteFile().getParentFile();
+			final PathMatcher matcher = FileSystems.getDefault()
+					.getPathMatcher("glob:" + file.getName());
+			accept = new FileFilter() {
+				public boolean accept(File candidate) {
+					return matcher.matches(candidate.toPath().getFileName());
+				}
+			};
+		}
+
+		File[] files = directory == null ? null : directory.listFiles(accept);
+		if (files == null)
+			throw new IOException("cannot list " + pattern);
+		List<File> inputs = new ArrayList<File>();
+		for (File input : files) {
+			if (input.isFile())
+				inputs.add(input);
+		}
+		Collections.sort(inputs);
+		return inputs;
+	}
+
+} // End of BatchRunner class.
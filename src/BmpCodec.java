@@ -0,0 +1,424 @@
+package src;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes uncompressed BMP files by mapping them into memory,
+ * 	without going through ImageIO. Rows are moved straight between the
+ * 	mapped file and a packed int raster like SimplePicture's. Reader and
+ * 	Writer give access to a few rows at a time, for pictures too large
+ * 	to hold in memory.
+ *
+ * Only uncompressed (BI_RGB) BMPs with 24 or 32 bits per pixel can be
+ * 	read; read returns null for anything else, including files that are
+ * 	not BMPs at all, so that callers can fall back on ImageIO. Files are
+ * 	always written as 24-bit BMPs. BMP rows are stored bottom-up unless
+ * 	the height is negative, and each row is padded to a multiple of four
+ * 	bytes.
+ *
+ * Java cannot unmap a file: a mapping lasts until its buffer is garbage
+ * 	collected, even after close. On Windows, a file that was read or
+ * 	written this way may stay locked, and so cannot be deleted or
+ * 	replaced, until then.
+ */
+public class BmpCodec
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Size of the file header plus the BITMAPINFOHEADER, in bytes.
+	 */
+	private static final int HEADER_SIZE = 54;
+
+	/**
+	 * The compression value of uncompressed BMPs.
+	 */
+	private static final int BI_RGB = 0;
+
+	/**
+	 * The most bytes of a file mapped at once by Reader and Writer.
+	 */
+	private static final int MAX_MAPPING = 1 << 30;
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Reads a BMP file into a new image.
+	 *
+	 * @param file The file to read.
+	 *
+	 * @return A TYPE_INT_RGB image holding the pixels of the file, or null if
+	 * 	the file is not a BMP that this codec can read.
+	 *
+	 * @throws IOException If the file cannot be read.
+	 */
+	public static BufferedImage read(File file) throws IOException {
+		Reader reader = Reader.open(file);
+		if (reader == null)
+			return null;
+		try {
+			if ((long) reader.getWidth() * reader.getHeight()
+					> Integer.MAX_VALUE)
+				return null;
+			BufferedImage image = new BufferedImage(reader.getWidth(),
+					reader.getHeight(), BufferedImage.TYPE_INT_RGB);
+			int[] raster = ((DataBufferInt) image.getRaster().getDataBuffer())
+					.getData();
+			reader.readRows(0, reader.getHeight(), raster, 0);
+			return image;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Writes packed pixels to a file as a 24-bit BMP, replacing anything
+	 * 	already in the file. Alpha is not written.
+	 *
+	 * @param raster The pixels to write, in row-major order.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param file The file to write to.
+	 *
+	 * @throws IOException If the file cannot be written.
+	 */
+	public static void write(int[] raster, int width, int height, File file)
+			throws IOException {
+		Writer writer = new Writer(file, width, height);
+		try {
+			writer.writeRows(0, height, raster, 0);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @param width The width of the picture in pixels.
+	 * @param bitsPerPixel The number of bits used for each pixel.
+	 *
+	 * @return The number of bytes taken by each row, including padding.
+	 */
+	static int stride(int width, int bitsPerPixel) {
+		return (int) (((long) width * bitsPerPixel + 31) / 32 * 4);
+	}
+
+	/**
+	 * Converts one row of blue, green, red (and unused) bytes into packed
+	 * 	pixels.
+	 */
+	private static void unpackRow(byte[] row, int[] raster, int offset,
+			int width, int bytesPerPixel) {
+		for (int x = 0, i = 0; x < width; x++, i += bytesPerPixel) {
+			raster[offset + x] = (row[i + 2] & 0xff) << 16
+					| (row[i + 1] & 0xff) << 8 | (row[i] & 0xff);
+		}
+	}
+
+	/**
+	 * Converts packed pixels into one row of blue, green, red bytes.
+	 */
+	private static void packRow(int[] raster, int offset, int width,
+			byte[] row) {
+		for (int x = 0, i = 0; x < width; x++, i += 3) {
+			int value = raster[offset + x];
+			row[i] = (byte) value;
+			row[i + 1] = (byte) (value >> 8);
+			row[i + 2] = (byte) (value >> 16);
+		}
+	}
+
+	////////////////////////////// Inner Classes //////////////////////////////
+
+	/**
+	 * Reads rows of a BMP file a few at a time, mapping only the part of
+	 * 	the file that holds them, so that files much larger than the heap
+	 * 	can be read in strips.
+	 */
+	public static class Reader implements Closeable
+	{
+		private final FileChannel channel;
+		private final Header header;
+
+		private Reader(FileChannel channel, Header header) {
+			this.channel = channel;
+			this.header = header;
+		}
+
+		/**
+		 * Opens a BMP file for reading.
+		 *
+		 * @param file The file to read.
+		 *
+		 * @return A Reader for the file, or null if the file is not a BMP
+		 * 	that this codec can read.
+		 *
+		 * @throws IOException If the file cannot be read.
+		 */
+		public static Reader open(File file) throws IOException {
+			FileChannel channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.READ);
+			Header header = null;
+			try {
+				header = Header.read(channel);
+			} finally {
+				if (header == null)
+					channel.close();
+			}
+			return header == null ? null : new Reader(channel, header);
+		}
+
+		/**
+		 * @return The width of the picture in pixels.
+		 */
+		public int getWidth() { return header.width; }
+
+		/**
+		 * @return The height of the picture in pixels.
+		 */
+		public int getHeight() { return header.height; }
+
+		/**
+		 * Reads consecutive rows of pixels.
+		 *
+		 * @param y The y-coordinate of the first row, counted from the top.
+		 * @param count The number of rows to read.
+		 * @param raster The array to store the rows in, in row-major order
+		 * 	and without alpha.
+		 * @param offset The index in raster of the first pixel of row y.
+		 *
+		 * @throws IOException If the file cannot be read.
+		 */
+		public void readRows(int y, int count, int[] raster, int offset)
+				throws IOException {
+			header.checkRows(y, count);
+			byte[] row = new byte[header.stride];
+			int bytesPerPixel = header.bitsPerPixel / 8;
+			int chunk = header.rowsPerMapping();
+			for (int first = y; first < y + count; first += chunk) {
+				int rows = Math.min(chunk, y + count - first);
+				long start = Math.min(header.rowOffset(first),
+						header.rowOffset(first + rows - 1));
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+						start, (long) rows * header.stride);
+				for (int i = first; i < first + rows; i++) {
+					buffer.position((int) (header.rowOffset(i) - start));
+					buffer.get(row);
+					unpackRow(row, raster, offset + (i - y) * header.width,
+							header.width, bytesPerPixel);
+				}
+			}
+		}
+
+		/**
+		 * Closes the file.
+		 */
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes a 24-bit BMP file a few rows at a time, mapping only the part
+	 * 	of the file that holds them. The rows can be written in any order;
+	 * 	rows never written are black. Each call to writeRows forces its rows
+	 * 	out to the file and drops its mappings, so the number of live
+	 * 	mappings does not grow with the height of the picture.
+	 */
+	public static class Writer implements Closeable
+	{
+		private final FileChannel channel;
+		private final Header header;
+
+		/**
+		 * Creates a BMP file of the size given, replacing anything already in
+		 * 	the file, and writes its headers.
+		 *
+		 * @param file The file to write to.
+		 * @param width The width of the picture in pixels.
+		 * @param height The height of the picture in pixels.
+		 *
+		 * @throws IOException If the file cannot be written.
+		 */
+		public Writer(File file, int width, int height) throws IOException {
+			header = new Header();
+			header.width = width;
+			header.height = height;
+			header.bitsPerPixel = 24;
+			header.pixelOffset = HEADER_SIZE;
+			header.stride = stride(width, 24);
+			long imageSize = (long) header.stride * height;
+			long size = HEADER_SIZE + imageSize;
+			if (size > 0xffffffffL)
+				throw new IOException(file + " would be too large for a BMP.");
+
+			channel = FileChannel.open(file.toPath(),
+					StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+				buffer.order(ByteOrder.LITTLE_ENDIAN);
+				// BITMAPFILEHEADER
+				buffer.put((byte) 'B').put((byte) 'M');
+				buffer.putInt((int) size);
+				buffer.putInt(0);
+				buffer.putInt(HEADER_SIZE);
+				// BITMAPINFOHEADER
+				buffer.putInt(40);
+				buffer.putInt(width);
+				buffer.putInt(height);
+				buffer.putShort((short) 1);
+				buffer.putShort((short) 24);
+				buffer.putInt(BI_RGB);
+				buffer.putInt((int) imageSize);
+				buffer.putInt(0);
+				buffer.putInt(0);
+				buffer.putInt(0);
+				buffer.putInt(0);
+				buffer.flip();
+				channel.write(buffer, 0);
+				// Give the file its full length; the padding stays zero.
+				if (imageSize > 0)
+					channel.write(ByteBuffer.allocate(1), size - 1);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * Writes consecutive rows of pixels, and forces them out to the
+		 * 	file. Alpha is not written.
+		 *
+		 * @param y The y-coordinate of the first row, counted from the top.
+		 * @param count The number of rows to write.
+		 * @param raster The pixels to write, in row-major order.
+		 * @param offset The index in raster of the first pixel of row y.
+		 *
+		 * @throws IOException If the file cannot be written.
+		 */
+		public void writeRows(int y, int count, int[] raster, int offset)
+				throws IOException {
+			header.checkRows(y, count);
+			byte[] row = new byte[header.stride];
+			int chunk = header.rowsPerMapping();
+			for (int first = y; first < y + count; first += chunk) {
+				int rows = Math.min(chunk, y + count - first);
+				MappedByteBuffer buffer = channel.map(
+						FileChannel.MapMode.READ_WRITE,
+						header.rowOffset(first + rows - 1),
+						(long) rows * header.stride);
+				// Rows go bottom-up.
+				for (int i = first + rows - 1; i >= first; i--) {
+					packRow(raster, offset + (i - y) * header.width,
+							header.width, row);
+					buffer.put(row);
+				}
+				buffer.force();
+			}
+		}
+
+		/**
+		 * Forces the headers and file metadata out to the file, and closes
+		 * 	it.
+		 */
+		public void close() throws IOException {
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * The layout of the pixels in a BMP file.
+	 */
+	private static class Header
+	{
+		int width;
+		int height;
+		int bitsPerPixel;
+		boolean topDown;
+		long pixelOffset;
+		int stride;
+
+		/**
+		 * Reads the headers at the start of a BMP file.
+		 *
+		 * @param channel The file.
+		 *
+		 * @return The layout of the file, or null if it is not a BMP this
+		 * 	codec can read or is too short to hold all of its rows.
+		 */
+		static Header read(FileChannel channel) throws IOException {
+			long size = channel.size();
+			if (size < HEADER_SIZE)
+				return null;
+			ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining()
+					&& channel.read(buffer, buffer.position()) >= 0) {
+				// Keep reading until the headers are in.
+			}
+
+			if (buffer.get(0) != 'B' || buffer.get(1) != 'M')
+				return null;
+			int infoSize = buffer.getInt(14);
+			int bitsPerPixel = buffer.getShort(28);
+			if (infoSize < 40 || buffer.getInt(30) != BI_RGB
+					|| (bitsPerPixel != 24 && bitsPerPixel != 32))
+				return null;
+
+			Header header = new Header();
+			header.width = buffer.getInt(18);
+			int height = buffer.getInt(22);
+			header.topDown = height < 0;
+			header.height = Math.abs(height);
+			header.bitsPerPixel = bitsPerPixel;
+			header.pixelOffset = buffer.getInt(10) & 0xffffffffL;
+			if (header.width <= 0 || header.height <= 0)
+				return null;
+			header.stride = stride(header.width, bitsPerPixel);
+			if (header.pixelOffset + (long) header.stride * header.height
+					> size)
+				return null;
+			return header;
+		}
+
+		/**
+		 * Checks that rows lie within the picture.
+		 */
+		void checkRows(int y, int count) {
+			if (y < 0 || count < 0 || (long) y + count > height)
+				throw new IndexOutOfBoundsException("Rows out of bounds!");
+		}
+
+		/**
+		 * @return The number of rows to map at once.
+		 */
+		int rowsPerMapping() {
+			return Math.max(1, MAX_MAPPING / stride);
+		}
+
+		/**
+		 * @param y The y-coordinate of a row, counted from the top.
+		 *
+		 * @return The position of the row in the file.
+		 */
+		long rowOffset(int y) {
+			int row = topDown ? y : height - 1 - y;
+			return pixelOffset + (long) row * stride;
+		}
+	}
+
+} // End of BmpCodec class.
@@ -0,0 +1,284 @@
+package src;
+
+/**
+ * A color adjustment given as a table of 256 entries for each of the red,
+ * 	green and blue channels: each channel of a pixel is replaced by the
+ * 	entry of its table at its old value, and alpha is left as it is.
+ * 	Picture.lighten, darken and the add* methods are applied this way,
+ * 	and so can any other curve, such as gamma, contrast, levels and
+ * 	posterize, or one built from arbitrary tables with of.
+ *
+ * The tables are kept already shifted into place, so adjusting a pixel
+ * 	costs one lookup per channel and no clamping. Lookups compose into a
+ * 	single lookup with then, and a PointPipeline merges consecutive ones,
+ * 	so a chain of color adjustments is still one lookup per channel.
+ * 	ChannelLookups are immutable and can be shared between threads.
+ */
+public final class ChannelLookup implements PointPipeline.PointOperation
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * The lookup that leaves pixels as they are.
+	 */
+	public static final ChannelLookup IDENTITY = add(0, 0, 0);
+
+	/**
+	 * The new red value for each red value, shifted into bits 16 to 23.
+	 */
+	private final int[] red;
+
+	/**
+	 * The new green value for each green value, shifted into bits 8 to 15.
+	 */
+	private final int[] green;
+
+	/**
+	 * The new blue value for each blue value.
+	 */
+	private final int[] blue;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * @param red The new red value for each red value, from 0 to 255.
+	 * @param green The new green value for each green value.
+	 * @param blue The new blue value for each blue value.
+	 */
+	private ChannelLookup(int[] red, int[] green, int[] blue) {
+		this.red = new int[256];
+		this.green = new int[256];
+		this.blue = new int[256];
+		for (int i = 0; i < 256; i++) {
+			this.red[i] = red[i] << 16;
+			this.green[i] = green[i] << 8;
+			this.blue[i] = blue[i];
+		}
+	}
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * @param red The new red value for each red value.
+	 * @param green The new green value for each green value.
+	 * @param blue The new blue value for each blue value.
+	 *
+	 * @return The lookup using those tables. Entries outside 0 to 255 are
+	 * 	clamped, as Pixel does.
+	 *
+	 * @throws IllegalArgumentException If a table does not have 256
+	 * 	entries.
+	 */
+	public static ChannelLookup of(int[] red, int[] green, int[] blue) {
+		return new ChannelLookup(clamped(red), clamped(green), clamped(blue));
+	}
+
+	/**
+	 * @param table The new value for each value, used for all three
+	 * 	channels.
+	 *
+	 * @return The lookup using that table; see of(int[], int[], int[]).
+	 */
+	public static ChannelLookup of(int[] table) {
+		int[] channel = clamped(table);
+		return new ChannelLookup(channel, channel, channel);
+	}
+
+	/**
+	 * @param red The amount to add to red.
+	 * @param green The amount to add to green.
+	 * @param blue The amount to add to blue.
+	 *
+	 * @return The lookup adding the amounts, with each channel kept
+	 * 	between 0 and 255, as Picture.addRed, addGreen and addBlue do.
+	 */
+	public static ChannelLookup add(int red, int green, int blue) {
+		return new ChannelLookup(offset(red), offset(green), offset(blue));
+	}
+
+	/**
+	 * @param amount The amount to add to every channel.
+	 *
+	 * @return The lookup of Picture.lighten(amount).
+	 */
+	public static ChannelLookup lighten(int amount) {
+		return add(amount, amount, amount);
+	}
+
+	/**
+	 * @param amount The amount to take from every channel.
+	 *
+	 * @return The lookup of Picture.darken(amount).
+	 */
+	public static ChannelLookup darken(int amount) {
+		return add(-amount, -amount, -amount);
+	}
+
+	/**
+	 * @param gamma The gamma to correct for. Values above 1 lighten the
+	 * 	midtones and values below 1 darken them; black and white stay.
+	 *
+	 * @return The lookup raising each channel, taken as a fraction of 255,
+	 * 	to the power 1 / gamma.
+	 *
+	 * @throws IllegalArgumentException If gamma is not positive.
+	 */
+	public static ChannelLookup gamma(double gamma) {
+		if (!(gamma > 0))
+			throw new IllegalArgumentException("gamma must be positive");
+		int[] table = new int[256];
+		for (int i = 0; i < 256; i++)
+			table[i] = (int) Math.round(255 * Math.pow(i / 255.0, 1 / gamma));
+		return of(table);
+	}
+
+	/**
+	 * @param factor How much to stretch each channel away from the middle
+	 * 	gray: 1 leaves pixels as they are, values above 1 add contrast, and
+	 * 	values from 0 to 1 take it away.
+	 *
+	 * @return The lookup scaling the distance of each channel from 127.5
+	 * 	by factor, clamped to 0 to 255.
+	 *
+	 * @throws IllegalArgumentException If factor is negative.
+	 */
+	public static ChannelLookup contrast(double factor) {
+		if (!(factor >= 0))
+			throw new IllegalArgumentException("factor must not be negative");
+		int[] table = new int[256];
+		for (int i = 0; i < 256; i++)
+			table[i] = (int) Math.round((i - 127.5) * factor + 127.5);
+		return of(table);
+	}
+
+	/**
+	 * Maps the input range [inBlack, inWhite] of every channel onto the
+	 * 	output range [outBlack, outWhite], with a gamma curve in between,
+	 * 	as the levels dialog of an image editor does. Values below inBlack
+	 * 	become outBlack, and values above inWhite become outWhite.
+	 *
+	 * @param inBlack The value mapped to outBlack.
+	 * @param inWhite The value mapped to outWhite.
+	 * @param gamma The gamma applied to the input range, as for gamma.
+	 * @param outBlack The darkest output value.
+	 * @param outWhite The lightest output value. It may be below outBlack,
+	 * 	which inverts the picture.
+	 *
+	 * @return The lookup.
+	 *
+	 * @throws IllegalArgumentException If inBlack is not below inWhite,
+	 * 	or gamma is not positive.
+	 */
+	public static ChannelLookup levels(int inBlack, int inWhite, double gamma,
+			int outBlack, int outWhite) {
+		if (inBlack >= inWhite)
+			throw new IllegalArgumentException("inBlack must be below inWhite");
+		if (!(gamma > 0))
+			throw new IllegalArgumentException("gamma must be positive");
+		int[] table = new int[256];
+		for (int i = 0; i < 256; i++) {
+			double t = Math.min(Math.max((double) (i - inBlack)
+					/ (inWhite - inBlack), 0), 1);
+			table[i] = (int) Math.round(outBlack
+					+ (outWhite - outBlack) * Math.pow(t, 1 / gamma));
+		}
+		return of(table);
+	}
+
+	/**
+	 * @param levels The number of values each channel may take, from 2 to
+	 * 	256.
+	 *
+	 * @return The lookup rounding each channel to the nearest of levels
+	 * 	values spread evenly from 0 to 255.
+	 *
+	 * @throws IllegalArgumentException If levels is not from 2 to 256.
+	 */
+	public static ChannelLookup posterize(int levels) {
+		if (levels < 2 || levels > 256)
+			throw new IllegalArgumentException("levels must be from 2 to 256");
+		double step = 255.0 / (levels - 1);
+		int[] table = new int[256];
+		for (int i = 0; i < 256; i++)
+			table[i] = (int) Math.round(Math.round(i / step) * step);
+		return of(table);
+	}
+
+	/**
+	 * @param next The lookup to apply after this one.
+	 *
+	 * @return The single lookup with the same effect as this one followed
+	 * 	by next.
+	 */
+	public ChannelLookup then(ChannelLookup next) {
+		int[] newRed = new int[256];
+		int[] newGreen = new int[256];
+		int[] newBlue = new int[256];
+		for (int i = 0; i < 256; i++) {
+			newRed[i] = next.red[red[i] >> 16] >> 16;
+			newGreen[i] = next.green[green[i] >> 8] >> 8;
+			newBlue[i] = next.blue[blue[i]];
+		}
+		return new ChannelLookup(newRed, newGreen, newBlue);
+	}
+
+	/**
+	 * @param value A color value, with alpha, red, green, blue each taking
+	 * 	8 bits from left to right.
+	 *
+	 * @return The color value with each channel looked up.
+	 */
+	public int apply(int value) {
+		return (value & 0xff000000) | red[(value >> 16) & 0xff]
+				| green[(value >> 8) & 0xff] | blue[value & 0xff];
+	}
+
+	/**
+	 * Looks up every pixel of a packed pixel array.
+	 *
+	 * @param source The pixels to adjust, in row-major order.
+	 * @param target The array to write the adjusted pixels to. It may be
+	 * 	source.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 */
+	public void apply(final int[] source, final int[] target,
+			final int width, int height) {
+		BandExecutor.run(width, height, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				int end = endY * width;
+				for (int i = startY * width; i < end; i++) {
+					int value = source[i];
+					target[i] = (value & 0xff000000)
+							| red[(value >> 16) & 0xff]
+							| green[(value >> 8) & 0xff] | blue[value & 0xff];
+				}
+			}
+		});
+	}
+
+	/**
+	 * @return A copy of a table with its entries clamped to 0 to 255.
+	 */
+	private static int[] clamped(int[] table) {
+		if (table.length != 256)
+			throw new IllegalArgumentException("a table needs 256 entries, not "
+					+ table.length);
+		int[] result = new int[256];
+		for (int i = 0; i < 256; i++)
+			result[i] = Math.min(Math.max(table[i], 0), 255);
+		return result;
+	}
+
+	/**
+	 * @return The table adding amount to each value, clamped to 0 to 255.
+	 */
+	private static int[] offset(int amount) {
+		int[] table = new int[256];
+		for (int i = 0; i < 256; i++)
+			table[i] = Math.min(Math.max(i + amount, 0), 255);
+		return table;
+	}
+
+} // End of ChannelLookup class.
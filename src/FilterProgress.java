@@ -0,0 +1,178 @@
+package src;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reports how far a Picture effect has got and lets it be cancelled. An
+ * 	effect run by a thread that has a current FilterProgress reports the
+ * 	rows it has finished as it goes, and stops with a
+ * 	CancellationException at the next row after cancel is called. Effects
+ * 	run without one behave as before.
+ *
+ * Effects that make several passes over the picture, such as the
+ * 	separable blurs, report each pass from 0 to 100 percent in turn.
+ * 	Bands run by BandExecutor report to the FilterProgress that was
+ * 	current on the thread that started the run. The threads the bands
+ * 	run on have no current FilterProgress, so code inside a band must not
+ * 	call current or checkpoint.
+ */
+public class FilterProgress
+{
+
+	/////////////////////////////// Interfaces ////////////////////////////////
+
+	/**
+	 * Told whenever the percentage of the current pass that is done
+	 * 	changes. It may be called from any thread.
+	 */
+	public interface Listener
+	{
+		/**
+		 * @param percent The percentage of the current pass that is done.
+		 */
+		void progressed(int percent);
+	}
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * The FilterProgress of each thread, if any.
+	 */
+	private static final ThreadLocal<FilterProgress> current =
+			new ThreadLocal<FilterProgress>();
+
+	/**
+	 * Who to tell about progress, or null.
+	 */
+	private final Listener listener;
+
+	/**
+	 * Whether the effect should stop.
+	 */
+	private volatile boolean cancelled = false;
+
+	/**
+	 * The number of rows done in the current pass.
+	 */
+	private final AtomicInteger rowsDone = new AtomicInteger();
+
+	/**
+	 * The number of rows in the current pass.
+	 */
+	private volatile int passRows = 1;
+
+	/**
+	 * The last percentage reported.
+	 */
+	private volatile int lastPercent = -1;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * @param listener Who to tell about progress, or null.
+	 */
+	public FilterProgress(Listener listener) {
+		this.listener = listener;
+	}
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * @return The FilterProgress of the calling thread, or null if it has
+	 * 	none.
+	 */
+	public static FilterProgress current() {
+		return current.get();
+	}
+
+	/**
+	 * Sets the FilterProgress of the calling thread.
+	 *
+	 * @param progress The new FilterProgress, or null for none.
+	 *
+	 * @return The previous FilterProgress of the thread, to put back with
+	 * 	setCurrent when done.
+	 */
+	public static FilterProgress setCurrent(FilterProgress progress) {
+		FilterProgress previous = current.get();
+		if (progress == null)
+			current.remove();
+		else
+			current.set(progress);
+		return previous;
+	}
+
+	/**
+	 * Reports progress through a loop to the calling thread's
+	 * 	FilterProgress, if it has one.
+	 *
+	 * @param done The number of steps finished.
+	 * @param total The total number of steps.
+	 *
+	 * @throws CancellationException If the effect has been cancelled.
+	 */
+	public static void checkpoint(int done, int total) {
+		FilterProgress progress = current.get();
+		if (progress != null) {
+			progress.checkCancelled();
+			progress.report(done, total);
+		}
+	}
+
+	/**
+	 * Asks the effect to stop at its next row.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return Whether cancel has been called.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @throws CancellationException If cancel has been called.
+	 */
+	public void checkCancelled() {
+		if (cancelled)
+			throw new CancellationException("effect cancelled");
+	}
+
+	/**
+	 * Starts a new pass over the picture.
+	 *
+	 * @param rows The number of rows in the pass.
+	 */
+	void beginPass(int rows) {
+		passRows = Math.max(rows, 1);
+		rowsDone.set(0);
+		report(0, passRows);
+	}
+
+	/**
+	 * Records that rows of the current pass are finished. Safe to call
+	 * 	from several threads at once.
+	 *
+	 * @param rows The number of rows just finished.
+	 */
+	void rowsFinished(int rows) {
+		report(rowsDone.addAndGet(rows), passRows);
+	}
+
+	/**
+	 * Tells the listener about the progress if the percentage changed.
+	 */
+	private void report(int done, int total) {
+		if (listener == null)
+			return;
+		int percent = (int) (100L * Math.min(done, total) / Math.max(total, 1));
+		if (percent != lastPercent) {
+			lastPercent = percent;
+			listener.progressed(percent);
+		}
+	}
+
+} // End of FilterProgress class.
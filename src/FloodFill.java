@@ -0,0 +1,162 @@
+package src;
+import java.awt.Rectangle;
+import java.util.BitSet;
+
+/**
+ * Scanline flood fill used by Picture.paintBucket. Starting from a seed
+ * 	pixel, every pixel that is connected to it through its eight
+ * 	neighbours and whose color is within a threshold of the seed's color
+ * 	is painted.
+ *
+ * Rather than queueing every neighbour of every painted pixel, the fill
+ * 	paints whole horizontal runs at once and queues a single seed for
+ * 	each run of matching pixels found on the rows above and below. A
+ * 	visited bitmap makes sure no pixel is tested for painting twice, so
+ * 	both the time and the memory used are bounded by the size of the
+ * 	region, whatever the new color is.
+ */
+public class FloodFill
+{
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Fills the region connected to (x, y).
+	 *
+	 * @param source The packed pixels the region is found in.
+	 * @param target The packed pixels to paint. It may be the same array as
+	 * 	source: painted pixels are marked visited, so their new color is
+	 * 	never tested.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param x The x-coordinate of the seed pixel.
+	 * @param y The y-coordinate of the seed pixel.
+	 * @param threshold The largest color distance from the seed color that
+	 * 	is still painted.
+	 * @param newColor The color value to paint with; its alpha is ignored.
+	 *
+	 * @return The bounding box of the painted pixels, or null if none were
+	 * 	painted.
+	 */
+	public static Rectangle fill(int[] source, int[] target, int width,
+			int height, int x, int y, int threshold, int newColor) {
+		int seedColor = source[y * width + x];
+		int limit = Pixel.squaredThreshold(threshold);
+		BitSet visited = new BitSet(width * height);
+		IntStack stack = new IntStack();
+		stack.push(y * width + x);
+		int newRgb = newColor & 0xffffff;
+		int minX = width;
+		int minY = height;
+		int maxX = -1;
+		int maxY = -1;
+
+		FilterProgress progress = FilterProgress.current();
+		while (!stack.isEmpty()) {
+			if (progress != null)
+				progress.checkCancelled();
+			int index = stack.pop();
+			if (visited.get(index)
+					|| !matches(source[index], seedColor, limit))
+				continue;
+			int row = index / width;
+			int rowStart = row * width;
+
+			// Extend the run as far as possible in both directions.
+			int left = index;
+			while (left > rowStart && !visited.get(left - 1)
+					&& matches(source[left - 1], seedColor, limit))
+				left--;
+			int right = index;
+			while (right < rowStart + width - 1 && !visited.get(right + 1)
+					&& matches(source[right + 1], seedColor, limit))
+				right++;
+
+			visited.set(left, right + 1);
+			for (int i = left; i <= right; i++)
+				target[i] = (target[i] & 0xff000000) | newRgb;
+			minX = Math.min(minX, left - rowStart);
+			maxX = Math.max(maxX, right - rowStart);
+			minY = Math.min(minY, row);
+			maxY = Math.max(maxY, row);
+
+			// Diagonal neighbours reach one pixel past each end of the run.
+			int scanLeft = Math.max(left - rowStart - 1, 0);
+			int scanRight = Math.min(right - rowStart + 1, width - 1);
+			if (row > 0)
+				pushRuns(source, visited, stack, rowStart - width,
+						scanLeft, scanRight, seedColor, limit);
+			if (row < height - 1)
+				pushRuns(source, visited, stack, rowStart + width,
+						scanLeft, scanRight, seedColor, limit);
+		}
+
+		if (maxX < 0)
+			return null;
+		return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+	}
+
+	/**
+	 * Queues one pixel from each run of unvisited matching pixels in part
+	 * 	of a row.
+	 *
+	 * @param source The packed pixels the region is found in.
+	 * @param visited The pixels already painted.
+	 * @param stack The pixels waiting to be filled from.
+	 * @param rowStart The index of the first pixel of the row.
+	 * @param fromX The first column to scan.
+	 * @param toX The last column to scan.
+	 * @param seedColor The color of the seed pixel.
+	 * @param limit The largest squared color distance still painted.
+	 */
+	private static void pushRuns(int[] source, BitSet visited, IntStack stack,
+			int rowStart, int fromX, int toX, int seedColor, int limit) {
+		boolean inRun = false;
+		for (int i = rowStart + fromX; i <= rowStart + toX; i++) {
+			if (!visited.get(i) && matches(source[i], seedColor, limit)) {
+				if (!inRun)
+					stack.push(i);
+				inRun = true;
+			} else {
+				inRun = false;
+			}
+		}
+	}
+
+	/**
+	 * @param value A color value.
+	 * @param seedColor The color value of the seed pixel.
+	 * @param limit The largest squared color distance still painted, from
+	 * 	Pixel.squaredThreshold.
+	 *
+	 * @return Whether the color is within the threshold of the seed color.
+	 */
+	private static boolean matches(int value, int seedColor, int limit) {
+		return Pixel.colorDistanceSquared(value, seedColor) <= limit;
+	}
+
+	////////////////////////////// Inner Classes //////////////////////////////
+
+	/**
+	 * A growable stack of ints, to avoid boxing every queued pixel.
+	 */
+	private static class IntStack
+	{
+		private int[] values = new int[64];
+		private int size = 0;
+
+		void push(int value) {
+			if (size == values.length) {
+				int[] grown = new int[size * 2];
+				System.arraycopy(values, 0, grown, 0, size);
+				values = grown;
+			}
+			values[size++] = value;
+		}
+
+		int pop() { return values[--size]; }
+
+		boolean isEmpty() { return size == 0; }
+	}
+
+} // End of FloodFill class.
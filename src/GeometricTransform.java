@@ -0,0 +1,289 @@
+package src;
+
+/**
+ * One of the eight ways to rotate and flip a picture onto a grid: the
+ * 	four quarter-turn rotations, and the flips about the horizontal,
+ * 	vertical and two diagonal axes used by Picture.flip. Every one of them
+ * 	just moves pixels around, so any rotation count, flip axis or chain of
+ * 	them comes down to a single mapping from each target pixel to the
+ * 	source pixel it is copied from, applied in one pass over the raster.
+ *
+ * The mapping is stored as three choices made in order: whether the
+ * 	target's x- and y-coordinates are swapped (a transpose), and then
+ * 	whether the source x- and y-coordinates run backwards. Transforms that
+ * 	swap coordinates read the source down its columns, so they are copied
+ * 	in square tiles small enough for the rows being read and written to
+ * 	stay in the cache.
+ *
+ * applyInPlace does the same without a second array, by mirroring rows
+ * 	and columns and then transposing, each with swaps. A transpose can
+ * 	only be done in place on a square picture.
+ */
+public final class GeometricTransform
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Side of the tiles transposing transforms are copied in, in pixels.
+	 */
+	public static final int TILE_SIZE = 32;
+
+	/**
+	 * The transform that leaves pictures as they are.
+	 */
+	public static final GeometricTransform IDENTITY =
+			new GeometricTransform(false, false, false);
+
+	/**
+	 * Whether target x runs along source y, and target y along source x.
+	 */
+	private final boolean transpose;
+
+	/**
+	 * Whether source x-coordinates are read from right to left.
+	 */
+	private final boolean mirrorX;
+
+	/**
+	 * Whether source y-coordinates are read from bottom to top.
+	 */
+	private final boolean mirrorY;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	private GeometricTransform(boolean transpose, boolean mirrorX,
+			boolean mirrorY) {
+		this.transpose = transpose;
+		this.mirrorX = mirrorX;
+		this.mirrorY = mirrorY;
+	}
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * @param rotations The number of 90-degree rotations, clockwise if
+	 * 	positive and counterclockwise if negative, as for Picture.rotate.
+	 *
+	 * @return The transform rotating by that amount.
+	 */
+	public static GeometricTransform rotation(int rotations) {
+		switch (((rotations % 4) + 4) % 4) {
+		case 1:
+			return new GeometricTransform(true, false, true);
+		case 2:
+			return new GeometricTransform(false, true, true);
+		case 3:
+			return new GeometricTransform(true, true, false);
+		default:
+			return IDENTITY;
+		}
+	}
+
+	/**
+	 * @param axis One of Picture.HORIZONTAL, Picture.VERTICAL,
+	 * 	Picture.FORWARD_DIAGONAL and Picture.BACKWARD_DIAGONAL.
+	 *
+	 * @return The transform flipping about that axis, as for Picture.flip.
+	 *
+	 * @throws IllegalArgumentException If the axis is not one of the four.
+	 */
+	public static GeometricTransform flip(int axis) {
+		switch (axis) {
+		case Picture.HORIZONTAL:
+			return new GeometricTransform(false, false, true);
+		case Picture.VERTICAL:
+			return new GeometricTransform(false, true, false);
+		case Picture.FORWARD_DIAGONAL:
+			return new GeometricTransform(true, true, true);
+		case Picture.BACKWARD_DIAGONAL:
+			return new GeometricTransform(true, false, false);
+		default:
+			throw new IllegalArgumentException("invalid argument");
+		}
+	}
+
+	/**
+	 * @param next The transform to apply after this one.
+	 *
+	 * @return The single transform that has the same effect as this one
+	 * 	followed by next.
+	 */
+	public GeometricTransform then(GeometricTransform next) {
+		// A transpose in this transform turns the mirrors of next, which
+		// act on this transform's target, into mirrors of the other axis.
+		boolean nextMirrorX = transpose ? next.mirrorY : next.mirrorX;
+		boolean nextMirrorY = transpose ? next.mirrorX : next.mirrorY;
+		return new GeometricTransform(transpose != next.transpose,
+				mirrorX != nextMirrorX, mirrorY != nextMirrorY);
+	}
+
+	/**
+	 * @return Whether this transform leaves pictures as they are.
+	 */
+	public boolean isIdentity() {
+		return !transpose && !mirrorX && !mirrorY;
+	}
+
+	/**
+	 * @param width The width of the source picture.
+	 * @param height The height of the source picture.
+	 *
+	 * @return The width of the transformed picture.
+	 */
+	public int targetWidth(int width, int height) {
+		return transpose ? height : width;
+	}
+
+	/**
+	 * @param width The width of the source picture.
+	 * @param height The height of the source picture.
+	 *
+	 * @return The height of the transformed picture.
+	 */
+	public int targetHeight(int width, int height) {
+		return transpose ? width : height;
+	}
+
+	/**
+	 * Transforms a packed pixel array.
+	 *
+	 * @param source The pixels to transform, in row-major order.
+	 * @param target The array to write the transformed pixels to, which
+	 * 	is targetWidth by targetHeight pixels. It must not be source.
+	 * @param width The width of the source picture in pixels.
+	 * @param height The height of the source picture in pixels.
+	 */
+	public void apply(final int[] source, final int[] target, int width,
+			int height) {
+		final int newWidth = targetWidth(width, height);
+		int newHeight = targetHeight(width, height);
+
+		// The source index of target pixel (0, 0), and how far the source
+		// index moves for each step along a target row or column.
+		int stepX = mirrorX ? -1 : 1;
+		int stepY = mirrorY ? -width : width;
+		final int origin = (mirrorX ? width - 1 : 0)
+				+ (mirrorY ? (height - 1) * width : 0);
+		final int columnStep = transpose ? stepY : stepX;
+		final int rowStep = transpose ? stepX : stepY;
+
+		// Without a transpose rows are read whole, so there is no need to
+		// split them into tiles.
+		final int tileWidth = transpose ? TILE_SIZE : Math.max(newWidth, 1);
+		final int tileHeight = transpose ? TILE_SIZE : 1;
+
+		BandExecutor.run(newWidth, newHeight, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				for (int tileY = startY; tileY < endY; tileY += tileHeight) {
+					int tileEndY = Math.min(tileY + tileHeight, endY);
+					for (int tileX = 0; tileX < newWidth; tileX += tileWidth) {
+						int tileEndX = Math.min(tileX + tileWidth, newWidth);
+						for (int y = tileY; y < tileEndY; y++) {
+							int from = origin + y * rowStep + tileX * columnStep;
+							int to = y * newWidth + tileX;
+							for (int x = tileX; x < tileEndX; x++) {
+								target[to++] = source[from];
+								from += columnStep;
+							}
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Transforms a packed pixel array in place, with the same result as
+	 * 	apply.
+	 *
+	 * @param pixels The pixels to transform, in row-major order. They are
+	 * 	replaced by the transformed pixels.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 *
+	 * @throws IllegalArgumentException If this transform swaps the x- and
+	 * 	y-coordinates and the picture is not square.
+	 */
+	public void applyInPlace(final int[] pixels, final int width,
+			final int height) {
+		if (transpose && width != height) {
+			throw new IllegalArgumentException("a " + width + "x" + height
+					+ " picture cannot be transposed in place");
+		}
+
+		// Mirror the source first; transposing then sends source pixel
+		// (y, x) to target pixel (x, y), as in apply.
+		if (mirrorX) {
+			BandExecutor.run(width, height, new BandExecutor.Band() {
+				public void run(int startY, int endY) {
+					for (int y = startY; y < endY; y++) {
+						int left = y * width;
+						int right = left + width - 1;
+						for (; left < right; left++, right--) {
+							swap(pixels, left, right);
+						}
+					}
+				}
+			});
+		}
+		if (mirrorY) {
+			BandExecutor.run(width, height / 2, new BandExecutor.Band() {
+				public void run(int startY, int endY) {
+					for (int y = startY; y < endY; y++) {
+						int top = y * width;
+						int bottom = (height - 1 - y) * width;
+						for (int x = 0; x < width; x++) {
+							swap(pixels, top + x, bottom + x);
+						}
+					}
+				}
+			});
+		}
+		if (transpose) {
+			BandExecutor.run(width, height, new BandExecutor.Band() {
+				public void run(int startY, int endY) {
+					for (int y = startY; y < endY; y++) {
+						for (int x = y + 1; x < width; x++) {
+							swap(pixels, y * width + x, x * width + y);
+						}
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Swaps two pixels of an array.
+	 */
+	private static void swap(int[] pixels, int i, int j) {
+		int value = pixels[i];
+		pixels[i] = pixels[j];
+		pixels[j] = value;
+	}
+
+	/**
+	 * @return A String naming the choices that make up this transform.
+	 */
+	public String toString() {
+		return "GeometricTransform[transpose=" + transpose + ", mirrorX="
+				+ mirrorX + ", mirrorY=" + mirrorY + "]";
+	}
+
+	/**
+	 * @return Whether obj is a GeometricTransform with the same effect.
+	 */
+	public boolean equals(Object obj) {
+		if (!(obj instanceof GeometricTransform)) {
+			return false;
+		}
+		GeometricTransform other = (GeometricTransform) obj;
+		return transpose == other.transpose && mirrorX == other.mirrorX
+				&& mirrorY == other.mirrorY;
+	}
+
+	public int hashCode() {
+		return (transpose ? 4 : 0) + (mirrorX ? 2 : 0) + (mirrorY ? 1 : 0);
+	}
+
+} // End of GeometricTransform class.
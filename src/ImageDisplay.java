@@ -1,9 +1,18 @@
 package src;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Class to display an image and the current location with a + sign.
+ * 	The image can be shown zoomed in or out. Zoomed images are drawn
+ * 	in square tiles, and only the tiles that are visible are scaled.
+ * 	Scaled tiles are kept in a least-recently-used cache of bounded size,
+ * 	shared by all zoom levels, so scrolling and returning to an earlier
+ * 	zoom level do not scale the same tiles again.
  * 
  * @author Barb Ericson (ericson@cc.gatech.edu)
  * 	(Copyright Georgia Institute of Technology 2004)
@@ -19,10 +28,26 @@ public class ImageDisplay extends JPanel implements Scrollable
 	/////////////////////////// Fields (attributes) ///////////////////////////
 	
 	private Image image;         // the image to draw
+	private Image preview;       // drawn over the image, scaled to fit, if set
 	private Dimension prefSize;  // the preferred size of the display
 	private int currentX = 0;    // the current x index 
 	private int currentY = 0;    // the current y index
+	private double zoom = 1;     // the scale the image is drawn at
+	private SimplePicture picture; // the picture shown, if known
 	private static final long serialVersionUID = 0; 
+
+	/** Side of the tiles zoomed images are drawn in, in screen pixels. */
+	public static final int TILE_SIZE = 256;
+
+	/** The most pixels kept in scaled tiles, for all zoom levels. */
+	public static final int MAX_CACHED_PIXELS = 16 * 1024 * 1024;
+
+	/** Scaled tiles of the image, least recently used first. */
+	private final LinkedHashMap<TileKey, BufferedImage> tiles =
+		new LinkedHashMap<TileKey, BufferedImage>(16, 0.75f, true);
+
+	/** The number of pixels in the scaled tiles. */
+	private long cachedPixels = 0;
 	
 	//////////////////////////// Constructors /////////////////////////////////
 
@@ -33,7 +58,7 @@ public class ImageDisplay extends JPanel implements Scrollable
 	 */
 	public ImageDisplay(Image theImage) {
 		image = theImage;
-		prefSize = new Dimension(image.getWidth(this), image.getHeight(this));
+		prefSize = getZoomedSize();
 		setPreferredSize(prefSize);
 		revalidate();
 	}
@@ -51,6 +76,18 @@ public class ImageDisplay extends JPanel implements Scrollable
 		currentY = y;
 	}
 
+	/**
+	 * Constructor that takes the picture to display. Zoomed-out tiles are
+	 * 	scaled from the picture's nearest mip level instead of the whole
+	 * 	image.
+	 * 
+	 * @param thePicture The picture to display.
+	 */
+	public ImageDisplay(SimplePicture thePicture) {
+		this(thePicture.getImage());
+		picture = thePicture;
+	}
+
 	///////////////////////////////// Methods /////////////////////////////////
 
 	/**
@@ -95,8 +132,227 @@ public class ImageDisplay extends JPanel implements Scrollable
 	 */
 	public void setImage(Image theImage) {
 		image = theImage;
-		setPreferredSize(new Dimension(image.getWidth(this),
-				image.getHeight(this)));
+		picture = null;
+		preview = null;
+		clearTiles();
+		setPreferredSize(getZoomedSize());
+		repaint();
+	}
+
+	/**
+	 * @return The scale the image is drawn at.
+	 */
+	public double getZoom() { return zoom; }
+
+	/**
+	 * Sets the scale to draw the image at. The current x- and y-values
+	 * 	are in zoomed coordinates, so they should be set again after this.
+	 * 
+	 * @param factor The scale to use; 1 draws the image at its own size.
+	 */
+	public void setZoom(double factor) {
+		if (factor <= 0)
+			throw new IllegalArgumentException("zoom must be positive");
+		zoom = factor;
+		prefSize = getZoomedSize();
+		setPreferredSize(prefSize);
+		revalidate();
+		repaint();
+	}
+
+	/**
+	 * Tells this display that the pixels of its image have changed, so
+	 * 	that scaled tiles made from the old pixels are not drawn again.
+	 */
+	public void imageChanged() {
+		clearTiles();
+		repaint();
+	}
+
+	/**
+	 * Tells this display that the pixels of its image have changed in a
+	 * 	region, so that only the tiles and the part of the screen
+	 * 	showing that region are drawn again.
+	 * 
+	 * @param changed The changed region, in image coordinates, or null if
+	 * 	any pixel may have changed.
+	 */
+	public void imageChanged(Rectangle changed) {
+		if (changed == null)
+		{
+			imageChanged();
+			return;
+		}
+
+		Iterator<Map.Entry<TileKey, BufferedImage>> entries =
+			tiles.entrySet().iterator();
+		while (entries.hasNext())
+		{
+			Map.Entry<TileKey, BufferedImage> entry = entries.next();
+			TileKey key = entry.getKey();
+			BufferedImage tile = entry.getValue();
+			Rectangle bounds = new Rectangle(key.column * TILE_SIZE,
+					key.row * TILE_SIZE, tile.getWidth(), tile.getHeight());
+			if (bounds.intersects(toScreen(changed, key.zoom)))
+			{
+				cachedPixels -= (long) tile.getWidth() * tile.getHeight();
+				entries.remove();
+			}
+		}
+		repaint(toScreen(changed, zoom));
+	}
+
+	/**
+	 * Shows a picture of the same size in place of the current one,
+	 * 	redrawing only the region where the two differ. Unlike setImage,
+	 * 	this keeps the layout and the scaled tiles outside that region.
+	 * 
+	 * @param thePicture The picture to show.
+	 * @param changed The region where it differs from the picture shown
+	 * 	now, in image coordinates, or null if it may differ anywhere.
+	 */
+	public void setPicture(SimplePicture thePicture, Rectangle changed) {
+		if (thePicture.getWidth() != image.getWidth(this)
+				|| thePicture.getHeight() != image.getHeight(this))
+			throw new IllegalArgumentException(
+					"the picture must be the same size as the image");
+		image = thePicture.getImage();
+		picture = thePicture;
+		imageChanged(preview == null ? changed : null);
+		preview = null;
+	}
+
+	/**
+	 * Converts a region of the image to the part of the screen that may
+	 * 	show it at a zoom factor. The region is widened by a couple of
+	 * 	screen pixels, for rounding and for the filtering of zoomed-out
+	 * 	tiles, which blends neighbouring pixels.
+	 * 
+	 * @param region The region, in image coordinates.
+	 * @param scale The zoom factor.
+	 * 
+	 * @return The region on the screen.
+	 */
+	private static Rectangle toScreen(Rectangle region, double scale) {
+		int left = (int) Math.floor(region.x * scale) - 2;
+		int top = (int) Math.floor(region.y * scale) - 2;
+		int right = (int) Math.ceil((region.x + region.width) * scale) + 2;
+		int bottom = (int) Math.ceil((region.y + region.height) * scale) + 2;
+		return new Rectangle(left, top, right - left, bottom - top);
+	}
+
+	/**
+	 * @return The size of the image once zoomed.
+	 */
+	private Dimension getZoomedSize() {
+		return new Dimension((int) (image.getWidth(this) * zoom),
+				(int) (image.getHeight(this) * zoom));
+	}
+
+	/**
+	 * Draws the part of the zoomed image inside the clip of a Graphics,
+	 * 	one tile at a time.
+	 * 
+	 * @param g The graphics object to draw with.
+	 * @param width The width of the zoomed image.
+	 * @param height The height of the zoomed image.
+	 */
+	private void drawTiles(Graphics g, int width, int height) {
+		Rectangle clip = g.getClipBounds();
+		if (clip == null)
+			clip = new Rectangle(0, 0, width, height);
+		int firstColumn = Math.max(clip.x, 0) / TILE_SIZE;
+		int firstRow = Math.max(clip.y, 0) / TILE_SIZE;
+		int lastColumn = Math.min(clip.x + clip.width, width) - 1;
+		int lastRow = Math.min(clip.y + clip.height, height) - 1;
+		for (int row = firstRow; row * TILE_SIZE <= lastRow; row++)
+		{
+			for (int column = firstColumn; column * TILE_SIZE <= lastColumn;
+					column++)
+			{
+				g.drawImage(getTile(column, row, width, height),
+						column * TILE_SIZE, row * TILE_SIZE, this);
+			}
+		}
+	}
+
+	/**
+	 * Returns a tile of the zoomed image, scaling it if it is not cached.
+	 * 
+	 * @param column The column of the tile.
+	 * @param row The row of the tile.
+	 * @param width The width of the zoomed image.
+	 * @param height The height of the zoomed image.
+	 * 
+	 * @return The tile.
+	 */
+	private BufferedImage getTile(int column, int row, int width,
+			int height) {
+		TileKey key = new TileKey(zoom, column, row);
+		BufferedImage tile = tiles.get(key);
+		if (tile != null)
+			return tile;
+
+		int x = column * TILE_SIZE;
+		int y = row * TILE_SIZE;
+		tile = new BufferedImage(Math.min(TILE_SIZE, width - x),
+				Math.min(TILE_SIZE, height - y), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = tile.createGraphics();
+		g2.translate(-x, -y);
+		if (zoom < 1 && picture != null)
+		{
+			// Scale down from the mip level just larger than the zoom.
+			int level = Math.min((int) Math.floor(-Math.log(zoom) / Math.log(2)),
+					picture.getMipLevelCount() - 1);
+			SimplePicture source = picture.getMipLevel(level);
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g2.scale(zoom * picture.getWidth() / source.getWidth(),
+					zoom * picture.getHeight() / source.getHeight());
+			g2.drawImage(source.getImage(), 0, 0, this);
+		}
+		else
+		{
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+			g2.scale(zoom, zoom);
+			g2.drawImage(image, 0, 0, this);
+		}
+		g2.dispose();
+
+		// Make room by dropping the least recently drawn tiles.
+		tiles.put(key, tile);
+		cachedPixels += (long) tile.getWidth() * tile.getHeight();
+		Iterator<Map.Entry<TileKey, BufferedImage>> eldest =
+			tiles.entrySet().iterator();
+		while (cachedPixels > MAX_CACHED_PIXELS && tiles.size() > 1)
+		{
+			BufferedImage dropped = eldest.next().getValue();
+			cachedPixels -= (long) dropped.getWidth() * dropped.getHeight();
+			eldest.remove();
+		}
+		return tile;
+	}
+
+	/**
+	 * Drops every scaled tile.
+	 */
+	private void clearTiles() {
+		tiles.clear();
+		cachedPixels = 0;
+	}
+
+	/**
+	 * Sets an image to show in place of the associated Image until the
+	 * 	next call to setImage or setPreview, stretched to the size of the
+	 * 	associated Image. This lets a quick, low-resolution version of a
+	 * 	result be shown while the full one is computed.
+	 * 
+	 * @param thePreview The Image to show, or null to show the associated
+	 * 	Image again.
+	 */
+	public void setPreview(Image thePreview) {
+		preview = thePreview;
 		repaint();
 	}
 
@@ -153,13 +409,19 @@ public class ImageDisplay extends JPanel implements Scrollable
 		int xEnd = currentX + num;
 		int yStart = currentY - num;
 		int yEnd = currentY + num;
-		int width = image.getWidth(this);
+		Dimension size = getZoomedSize();
+		int width = size.width;
 		int maxX = width - 1;
-		int height = image.getHeight(this);
+		int height = size.height;
 		int maxY = height - 1;
 
-		// Draw the image
-		g.drawImage(image, 0, 0, this);
+		// Draw the image, or the preview stretched over it.
+		if (preview != null)
+			g.drawImage(preview, 0, 0, width, height, this);
+		else if (zoom == 1)
+			g.drawImage(image, 0, 0, this);
+		else
+			drawTiles(g, width, height);
 
 		// Check if the current index is in the image.
 		if (currentX >= 0 && currentX < width &&
@@ -207,4 +469,35 @@ public class ImageDisplay extends JPanel implements Scrollable
 		}
 	}
 
+	/////////////////////////////// Inner Classes /////////////////////////////
+
+	/**
+	 * Identifies a scaled tile: its zoom level and position.
+	 */
+	private static class TileKey
+	{
+		private final double zoom;
+		private final int column;
+		private final int row;
+
+		TileKey(double zoom, int column, int row) {
+			this.zoom = zoom;
+			this.column = column;
+			this.row = row;
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TileKey))
+				return false;
+			TileKey other = (TileKey) obj;
+			return zoom == other.zoom && column == other.column
+				&& row == other.row;
+		}
+
+		public int hashCode() {
+			long bits = Double.doubleToLongBits(zoom);
+			return (int) (bits ^ (bits >>> 32)) * 961 + column * 31 + row;
+		}
+	}
+
 } // End of ImageDisplay class.
@@ -1,8 +1,8 @@
 package src;
 
 import java.awt.*;
-import java.util.LinkedList;
 import java.net.URL;
+import java.util.Arrays;
 
 /**
  * A class that represents a picture. This class inherits from SimplePicture and
@@ -26,21 +26,6 @@ public class Picture extends SimplePicture {
 	public static final int FORWARD_DIAGONAL = 3;
 	public static final int BACKWARD_DIAGONAL = 4;
 
-	// Different Picture objects for the bitmaps used in ASCII art conversion.
-	private static Picture BMP_AMPERSAND;
-	private static Picture BMP_APOSTROPHE;
-	private static Picture BMP_AT;
-	private static Picture BMP_BAR;
-	private static Picture BMP_COLON;
-	private static Picture BMP_DOLLAR;
-	private static Picture BMP_DOT;
-	private static Picture BMP_EXCLAMATION;
-	private static Picture BMP_GRAVE;
-	private static Picture BMP_HASH;
-	private static Picture BMP_PERCENT;
-	private static Picture BMP_SEMICOLON;
-	private static Picture BMP_SPACE;
-
 	// ////////////////////////// Constructors /////////////////////////////////
 
 	/**
@@ -114,7 +99,14 @@ public class Picture extends SimplePicture {
 	/*
 	 * Each of the methods below is constructive: in other words, each of the
 	 * methods below generates a new Picture, without permanently modifying the
-	 * original Picture.
+	 * original Picture. The exceptions are the methods ending in InPlace,
+	 * which give the same result as the method they are named after but
+	 * write it into this Picture, with no copy and only a row or so of extra
+	 * memory. They return this Picture, so that they can be chained.
+	 * 
+	 * The point filters (grayscale, negate, lighten, darken and the add*
+	 * methods) process bands of rows concurrently through BandExecutor; the
+	 * result is identical to processing the rows one after another.
 	 */
 
 	// ////////////////////////////// Level 1 //////////////////////////////////
@@ -130,19 +122,32 @@ public class Picture extends SimplePicture {
 	 * @return A new Picture that is the grayscale version of this Picture.
 	 */
 	public Picture grayscale() {
-		Picture newPicture = new Picture(this);
+		final Picture newPicture = new Picture(this);
 
 		int pictureHeight = this.getHeight();
-		int pictureWidth = this.getWidth();
-
-		for (int x = 0; x < pictureWidth; x++) {
-			for (int y = 0; y < pictureHeight; y++) {
-				newPicture.setPixelToGray(x, y);
+		final int pictureWidth = this.getWidth();
+
+		BandExecutor.run(pictureWidth, pictureHeight, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				for (int y = startY; y < endY; y++) {
+					for (int x = 0; x < pictureWidth; x++) {
+						newPicture.setPixelToGray(x, y);
+					}
+				}
 			}
-		}
+		});
 		return newPicture;
 	}
 
+	/**
+	 * Converts this Picture into grayscale in place; see grayscale().
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture grayscaleInPlace() {
+		return pipeline().grayscale().applyInPlace();
+	}
+
 	/**
 	 * Helper method for grayscale() to set a pixel at (x, y) to be gray.
 	 * 
@@ -152,11 +157,7 @@ public class Picture extends SimplePicture {
 	 *            The y-coordinate of the pixel to be set to gray.
 	 */
 	private void setPixelToGray(int x, int y) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int average = currentPixel.getAverage();
-		currentPixel.setRed(average);
-		currentPixel.setGreen(average);
-		currentPixel.setBlue(average);
+		this.setBasicPixel(x, y, PointPipeline.gray(this.getBasicPixel(x, y)));
 	}
 
 	/**
@@ -232,19 +233,32 @@ public class Picture extends SimplePicture {
 	 * @return A new Picture that is the photonegative version of this Picture.
 	 */
 	public Picture negate() {
-		Picture negPicture = new Picture(this);
+		final Picture negPicture = new Picture(this);
 
 		int picHeight = this.getHeight();
-		int picWidth = this.getWidth();
-
-		for (int h = 0; h < picHeight; h++) {
-			for (int w = 0; w < picWidth; w++) {
-				negPicture.setPixelToNegative(w, h);
+		final int picWidth = this.getWidth();
+
+		BandExecutor.run(picWidth, picHeight, new BandExecutor.Band() {
+			public void run(int startH, int endH) {
+				for (int h = startH; h < endH; h++) {
+					for (int w = 0; w < picWidth; w++) {
+						negPicture.setPixelToNegative(w, h);
+					}
+				}
 			}
-		}
+		});
 		return negPicture;
 	}
 
+	/**
+	 * Converts this Picture into its photonegative in place; see negate().
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture negateInPlace() {
+		return pipeline().negate().applyInPlace();
+	}
+
 	/**
 	 * Convenience method to set each pixel to its negative color.
 	 * 
@@ -254,13 +268,8 @@ public class Picture extends SimplePicture {
 	 *            The y coor of the pixel to negate.
 	 */
 	private void setPixelToNegative(int x, int y) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int newRed = 255 - currentPixel.getRed();
-		int newGreen = 255 - currentPixel.getGreen();
-		int newBlue = 255 - currentPixel.getBlue();
-		currentPixel.setRed(newRed);
-		currentPixel.setGreen(newGreen);
-		currentPixel.setBlue(newBlue);
+		this.setBasicPixel(x, y,
+				PointPipeline.negative(this.getBasicPixel(x, y)));
 	}
 
 	/**
@@ -289,37 +298,20 @@ public class Picture extends SimplePicture {
 	 *         by the lightenAmount.
 	 */
 	public Picture lighten(int lightenAmount) {
-		Picture lightPicture = new Picture(this);
-
-		int picHeight = this.getHeight();
-		int picWidth = this.getWidth();
-
-		for (int h = 0; h < picHeight; h++) {
-			for (int w = 0; w < picWidth; w++) {
-				lightPicture.lightenPixel(w, h, lightenAmount);
-			}
-		}
-		return lightPicture;
+		return new Picture(this).applyLookupInPlace(
+				ChannelLookup.lighten(lightenAmount));
 	}
 
 	/**
-	 * Convenience method to lighten each pixel by param amount.
+	 * Lightens this Picture in place; see lighten(int).
 	 * 
-	 * @param x
-	 *            The x coor of the pixel to lighten.
-	 * @param y
-	 *            The y coor of the pixel to lighten.
-	 * @param amount
-	 *            The amount to lighten by.
+	 * @param lightenAmount
+	 *            The amount to increase every color value by.
+	 * 
+	 * @return This Picture.
 	 */
-	private void lightenPixel(int x, int y, int amount) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int newRed = currentPixel.getRed() + amount;
-		int newGreen = currentPixel.getGreen() + amount;
-		int newBlue = currentPixel.getBlue() + amount;
-		currentPixel.setRed(newRed);
-		currentPixel.setGreen(newGreen);
-		currentPixel.setBlue(newBlue);
+	public Picture lightenInPlace(int lightenAmount) {
+		return applyLookupInPlace(ChannelLookup.lighten(lightenAmount));
 	}
 
 	/**
@@ -351,36 +343,20 @@ public class Picture extends SimplePicture {
 	 *         by the darkenenAmount.
 	 */
 	public Picture darken(int darkenAmount) {
-		Picture darkPicture = new Picture(this);
-		int picHeight = this.getHeight();
-		int picWidth = this.getWidth();
-
-		for (int h = 0; h < picHeight; h++) {
-			for (int w = 0; w < picWidth; w++) {
-				darkPicture.darkenPixel(w, h, darkenAmount);
-			}
-		}
-		return darkPicture;
+		return new Picture(this).applyLookupInPlace(
+				ChannelLookup.darken(darkenAmount));
 	}
 
 	/**
-	 * Convenience method to darken each pixel by param amount.
+	 * Darkens this Picture in place; see darken(int).
 	 * 
-	 * @param x
-	 *            The x coor of the pixel to darken.
-	 * @param y
-	 *            The y coor of the pixel to darken.
-	 * @param amount
-	 *            The amount to darken by.
+	 * @param darkenAmount
+	 *            The amount to decrease every color value by.
+	 * 
+	 * @return This Picture.
 	 */
-	private void darkenPixel(int x, int y, int amount) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int newRed = currentPixel.getRed() - amount;
-		int newGreen = currentPixel.getGreen() - amount;
-		int newBlue = currentPixel.getBlue() - amount;
-		currentPixel.setRed(newRed);
-		currentPixel.setGreen(newGreen);
-		currentPixel.setBlue(newBlue);
+	public Picture darkenInPlace(int darkenAmount) {
+		return applyLookupInPlace(ChannelLookup.darken(darkenAmount));
 	}
 
 	/**
@@ -412,32 +388,20 @@ public class Picture extends SimplePicture {
 	 *         by amount.
 	 */
 	public Picture addBlue(int amount) {
-		Picture bluePicture = new Picture(this);
-		int picHeight = this.getHeight();
-		int picWidth = this.getWidth();
-
-		for (int h = 0; h < picHeight; h++) {
-			for (int w = 0; w < picWidth; w++) {
-				bluePicture.addBluePixel(w, h, amount);
-			}
-		}
-		return bluePicture;
+		return new Picture(this).applyLookupInPlace(
+				ChannelLookup.add(0, 0, amount));
 	}
 
 	/**
-	 * Convenience method to add blue each pixel by param amount.
+	 * Increases the blue values of this Picture in place; see addBlue(int).
 	 * 
-	 * @param x
-	 *            The x coor of the pixel to add Blue.
-	 * @param y
-	 *            The y coor of the pixel to add Blue.
 	 * @param amount
-	 *            The amount of Blue to add.
+	 *            The amount to increase every blue value by.
+	 * 
+	 * @return This Picture.
 	 */
-	private void addBluePixel(int x, int y, int amount) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int newBlue = currentPixel.getBlue() + amount;
-		currentPixel.setBlue(newBlue);
+	public Picture addBlueInPlace(int amount) {
+		return applyLookupInPlace(ChannelLookup.add(0, 0, amount));
 	}
 
 	/**
@@ -469,31 +433,20 @@ public class Picture extends SimplePicture {
 	 *         by amount.
 	 */
 	public Picture addRed(int amount) {
-		Picture redPicture = new Picture(this);
-		int picHeight = this.getHeight();
-		int picWidth = this.getWidth();
-		for (int h = 0; h < picHeight; h++) {
-			for (int w = 0; w < picWidth; w++) {
-				redPicture.addRedPixel(w, h, amount);
-			}
-		}
-		return redPicture;
+		return new Picture(this).applyLookupInPlace(
+				ChannelLookup.add(amount, 0, 0));
 	}
 
 	/**
-	 * Convenience method to add red each pixel by param amount.
+	 * Increases the red values of this Picture in place; see addRed(int).
 	 * 
-	 * @param x
-	 *            The x coor of the pixel to add Red.
-	 * @param y
-	 *            The y coor of the pixel to add Red.
 	 * @param amount
-	 *            The amount of Red to add.
+	 *            The amount to increase every red value by.
+	 * 
+	 * @return This Picture.
 	 */
-	private void addRedPixel(int x, int y, int amount) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int newRed = currentPixel.getRed() + amount;
-		currentPixel.setRed(newRed);
+	public Picture addRedInPlace(int amount) {
+		return applyLookupInPlace(ChannelLookup.add(amount, 0, 0));
 	}
 
 	/**
@@ -525,32 +478,20 @@ public class Picture extends SimplePicture {
 	 *         by amount.
 	 */
 	public Picture addGreen(int amount) {
-		Picture greenPicture = new Picture(this);
-		int picHeight = this.getHeight();
-		int picWidth = this.getWidth();
-
-		for (int h = 0; h < picHeight; h++) {
-			for (int w = 0; w < picWidth; w++) {
-				greenPicture.addGreenPixel(w, h, amount);
-			}
-		}
-		return greenPicture;
+		return new Picture(this).applyLookupInPlace(
+				ChannelLookup.add(0, amount, 0));
 	}
 
 	/**
-	 * Convenience method to green each pixel by param amount.
+	 * Increases the green values of this Picture in place; see addGreen(int).
 	 * 
-	 * @param x
-	 *            The x coor of the pixel to add Green.
-	 * @param y
-	 *            The y coor of the pixel to add Green.
 	 * @param amount
-	 *            The amount of Green to add.
+	 *            The amount to increase every green value by.
+	 * 
+	 * @return This Picture.
 	 */
-	private void addGreenPixel(int x, int y, int amount) {
-		Pixel currentPixel = this.getPixel(x, y);
-		int newGreen = currentPixel.getGreen() + amount;
-		currentPixel.setGreen(newGreen);
+	public Picture addGreenInPlace(int amount) {
+		return applyLookupInPlace(ChannelLookup.add(0, amount, 0));
 	}
 
 	/**
@@ -573,6 +514,50 @@ public class Picture extends SimplePicture {
 		return redCorrect && greenCorrect && blueCorrect && alphaCorrect;
 	}
 
+	/**
+	 * Starts a chain of point operations (grayscale, negate, lighten, darken,
+	 * addRed, addGreen, addBlue) on this Picture that is applied in a single
+	 * pass when its toPicture method is called. For example,
+	 * pipeline().grayscale().lighten(20).toPicture() gives the same Picture as
+	 * grayscale().lighten(20), without the intermediate copy.
+	 * 
+	 * @return An empty PointPipeline over this Picture.
+	 */
+	public PointPipeline pipeline() {
+		return new PointPipeline(this);
+	}
+
+	/**
+	 * Adjusts the colors of this Picture through a table for each channel;
+	 * see ChannelLookup, which has tables for gamma, contrast, levels and
+	 * posterize among others. lighten, darken and the add* methods are
+	 * lookups too.
+	 * 
+	 * @param lookup
+	 *            The tables to look each channel up in.
+	 * 
+	 * @return A new Picture with every pixel of this Picture looked up.
+	 */
+	public Picture applyLookup(ChannelLookup lookup) {
+		return new Picture(this).applyLookupInPlace(lookup);
+	}
+
+	/**
+	 * Adjusts the colors of this Picture through a table for each channel
+	 * in place, in a single pass over its pixels; see applyLookup.
+	 * 
+	 * @param lookup
+	 *            The tables to look each channel up in.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture applyLookupInPlace(ChannelLookup lookup) {
+		int[] raster = this.getRaster();
+		lookup.apply(raster, raster, this.getWidth(), this.getHeight());
+		this.pixelsChanged();
+		return this;
+	}
+
 	/**
 	 * @param x
 	 *            x-coordinate of the pixel currently selected.
@@ -596,23 +581,56 @@ public class Picture extends SimplePicture {
 	 */
 	public Picture chromaKey(int xRef, int yRef, Picture background,
 			int threshold) {
-		Pixel comparePixel = this.getPixel(xRef, yRef);
-		Picture chromaPicture = new Picture(this);
+		return new Picture(this).chromaKeyInPlace(xRef, yRef, background,
+				threshold);
+	}
+
+	/**
+	 * Replaces the pixels of this Picture close to the selected pixel with
+	 * those of the background in place; see chromaKey. The background may
+	 * be this Picture itself.
+	 * 
+	 * @param xRef
+	 *            x-coordinate of the pixel currently selected.
+	 * @param yRef
+	 *            y-coordinate of the pixel currently selected.
+	 * @param background
+	 *            Picture to use as the background.
+	 * @param threshold
+	 *            Threshold within which to replace pixels.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture chromaKeyInPlace(int xRef, int yRef, Picture background,
+			int threshold) {
+		final int compareValue = this.getBasicPixel(xRef, yRef);
+		final int limit = Pixel.squaredThreshold(threshold);
 		int picHeight = Math.min(background.getHeight(), this.getHeight());
-		int picWidth = Math.min(background.getWidth(), this.getWidth());
-
-		for (int h = 0; h < picHeight; h++) {
-			for (int w = 0; w < picWidth; w++) {
-				if (colorDistance(this.getPixel(w, h), comparePixel) <= threshold) {
-					Pixel currentPixel = chromaPicture.getPixel(w, h);
-					Pixel backgroundPixel = background.getPixel(w, h);
-					currentPixel.setRed(backgroundPixel.getRed());
-					currentPixel.setBlue(backgroundPixel.getBlue());
-					currentPixel.setGreen(backgroundPixel.getGreen());
+		final int picWidth = Math.min(background.getWidth(), this.getWidth());
+		final int width = this.getWidth();
+		final int backgroundWidth = background.getWidth();
+		final int[] source = this.getRaster();
+		final int[] backgroundSource = background.getRaster();
+		final int[] target = source;
+
+		BandExecutor.run(picWidth, picHeight, new BandExecutor.Band() {
+			public void run(int startH, int endH) {
+				for (int h = startH; h < endH; h++) {
+					int index = h * width;
+					int backgroundIndex = h * backgroundWidth;
+					for (int w = 0; w < picWidth; w++) {
+						if (Pixel.colorDistanceSquared(source[index + w],
+								compareValue) <= limit) {
+							target[index + w] = (target[index + w] & 0xff000000)
+									| (backgroundSource[backgroundIndex + w]
+									& 0xffffff);
+						}
+					}
 				}
 			}
-		}
-		return chromaPicture;
+		});
+		this.pixelsChanged(0, 0, picWidth, picHeight);
+		return this;
 	}
 
 	/**
@@ -626,10 +644,8 @@ public class Picture extends SimplePicture {
 	 * @return double that is the distance between the two colors
 	 */
 	private static double colorDistance(Pixel myPixel, Pixel comparison) {
-		double red = Math.pow(myPixel.getRed() - comparison.getRed(), 2);
-		double blue = Math.pow(myPixel.getBlue() - comparison.getBlue(), 2);
-		double green = Math.pow(myPixel.getGreen() - comparison.getGreen(), 2);
-		return Math.sqrt(red + blue + green);
+		return Math.sqrt(Pixel.colorDistanceSquared(
+				myPixel.getColor().getRGB(), comparison.getColor().getRGB()));
 	}
 
 	/**
@@ -654,6 +670,9 @@ public class Picture extends SimplePicture {
 	 * clockwise; else, the picture is rotated counterclockwise. Multiples of
 	 * four rotations (including zero) correspond to no rotation at all.
 	 * 
+	 * However many rotations are asked for, the pixels are copied only once;
+	 * see GeometricTransform.
+	 * 
 	 * @param rotations
 	 *            The number of 90-degree rotations to rotate this image by.
 	 * 
@@ -661,23 +680,10 @@ public class Picture extends SimplePicture {
 	 */
 	public Picture rotate(int rotations) {
 		int rotNums = toPos(rotations) % 4;
-		Picture tmpPic;
-		Picture newPic = this;
-		while (rotNums > 0) {
-			tmpPic = newPic;
-			int height = tmpPic.getHeight();
-			int width = tmpPic.getWidth();
-			newPic = new Picture(height, width);
-			for (int h = 0; h < height; h++) {
-				for (int w = 0; w < width; w++) {
-					Color toSet = tmpPic.getPixel(w, h).getColor();
-					Pixel toChange = newPic.getPixel(height - h - 1, w);
-					toChange.setColor(toSet);
-				}
-			}
-			rotNums--;
+		if (rotNums == 0) {
+			return this;
 		}
-		return newPic;
+		return this.transform(GeometricTransform.rotation(rotNums));
 	}
 
 	/**
@@ -721,43 +727,76 @@ public class Picture extends SimplePicture {
 	 * @return A new Picture flipped about the axis provided.
 	 */
 	public Picture flip(int axis) {
-		Picture newPic;
-		if (axis == Picture.VERTICAL || axis == Picture.HORIZONTAL) {
-			newPic = new Picture(this.getWidth(), this.getHeight());
-		} else if (axis == Picture.FORWARD_DIAGONAL
-				|| axis == Picture.BACKWARD_DIAGONAL) {
-			newPic = new Picture(this.getHeight(), this.getWidth());
-		} else {
-			throw new IllegalArgumentException("invalid argument");
-		}
-		int xCoord;
-		int yCoord;
-		for (int w = 0; w < this.getWidth(); w++) {
-			for (int h = 0; h < this.getHeight(); h++) {
-				if (axis == Picture.HORIZONTAL) {
-					xCoord = w;
-					yCoord = this.getHeight() - h - 1;
-				} else if (axis == Picture.VERTICAL) {
-					xCoord = this.getWidth() - w - 1;
-					yCoord = h;
-				} else if (axis == Picture.FORWARD_DIAGONAL) {
-					xCoord = this.getHeight() - h - 1;
-					yCoord = newPic.getHeight() - w - 1;
-				} else if (axis == Picture.BACKWARD_DIAGONAL) {
-					xCoord = h;
-					yCoord = w;
-				} else {
-					xCoord = w;
-					yCoord = h;
-				}
-				Color toSet = this.getPixel(w, h).getColor();
-				Pixel toChange = newPic.getPixel(xCoord, yCoord);
-				toChange.setColor(toSet);
-			}
-		}
+		return this.transform(GeometricTransform.flip(axis));
+	}
+
+	/**
+	 * Flips this Picture about the given axis in place; see flip(int). Only
+	 * square Pictures can be flipped about a diagonal in place.
+	 * 
+	 * @param axis
+	 *            Axis about which to flip the Picture.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture flipInPlace(int axis) {
+		return this.transformInPlace(GeometricTransform.flip(axis));
+	}
+
+	/**
+	 * Rotates this square Picture in place; see rotate(int).
+	 * 
+	 * @param rotations
+	 *            The number of 90-degree rotations to rotate this image by.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture rotateInPlace(int rotations) {
+		return this.transformInPlace(GeometricTransform.rotation(rotations));
+	}
+
+	/**
+	 * Rotates and/or flips this Picture in a single pass over its pixels.
+	 * 
+	 * @param transform
+	 *            The rotation, flip or combination of them to apply, such
+	 *            as GeometricTransform.rotation(1).then(
+	 *            GeometricTransform.flip(Picture.VERTICAL)).
+	 * 
+	 * @return A new Picture that is the transformed version of this Picture.
+	 */
+	public Picture transform(GeometricTransform transform) {
+		int width = this.getWidth();
+		int height = this.getHeight();
+		Picture newPic = new Picture(transform.targetWidth(width, height),
+				transform.targetHeight(width, height));
+		transform.apply(this.getRaster(), newPic.getRaster(), width, height);
 		return newPic;
 	}
 
+	/**
+	 * Rotates and/or flips this Picture in place; see transform. Transforms
+	 * that swap the x- and y-coordinates, such as quarter turns and flips
+	 * about a diagonal, need a square Picture.
+	 * 
+	 * @param transform
+	 *            The rotation, flip or combination of them to apply.
+	 * 
+	 * @return This Picture.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the transform swaps coordinates and this Picture is not
+	 *             square.
+	 */
+	public Picture transformInPlace(GeometricTransform transform) {
+		if (!transform.isIdentity()) {
+			transform.applyInPlace(this.getRaster(), this.getWidth(),
+					this.getHeight());
+			this.pixelsChanged();
+		}
+		return this;
+	}
+
 	/**
 	 * @param threshold
 	 *            Threshold to use to determine the presence of edges.
@@ -775,34 +814,97 @@ public class Picture extends SimplePicture {
 	 *         (with an alpha of 255). The pixel at (0, 0) will always be set to
 	 *         white.
 	 */
-	public Picture showEdges(int threshold) {
-		int width = this.getWidth();
-		int height = this.getHeight();
+	public Picture showEdges(int threshold) {
+		final int width = this.getWidth();
+		int height = this.getHeight();
 		Picture newPic = new Picture(width, height);
+		// A distance rounded down to an int is within the threshold exactly
+		// when its square is within this limit. Missing neighbors count as a
+		// distance of 0, so every pixel is an edge if the threshold is
+		// negative.
+		final int limit = Pixel.truncatedSquaredThreshold(threshold);
+		final int[] source = this.getRaster();
+		final int[] target = newPic.getRaster();
+		final int black = Color.black.getRGB();
+		final int white = Color.white.getRGB();
+
+		BandExecutor.run(width, height, new BandExecutor.Band() {
+			public void run(int startH, int endH) {
+				for (int h = startH; h < endH; h++) {
+					int index = h * width;
+					for (int w = 0; w < width; w++, index++) {
+						int norDis = 0;
+						int leftDis = 0;
+						if (h != 0) {
+							norDis = Pixel.colorDistanceSquared(source[index],
+									source[index - width]);
+						}
+						if (w != 0) {
+							leftDis = Pixel.colorDistanceSquared(source[index],
+									source[index - 1]);
+						}
+						if (norDis > limit || leftDis > limit) {
+							target[index] = black;
+						} else {
+							target[index] = white;
+						}
+					}
+				}
+			}
+		});
+		return newPic;
+	}
+
+	/**
+	 * Replaces this Picture with its edges; see showEdges(int). Each pixel is
+	 * compared with the original pixels to its left and to its north, so a
+	 * copy of the original previous row is kept as the rows are overwritten
+	 * from the top down: the extra memory is two rows.
+	 * 
+	 * @param threshold
+	 *            Threshold to use to determine the presence of edges.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture showEdgesInPlace(int threshold) {
+		int width = this.getWidth();
+		int height = this.getHeight();
+		int limit = Pixel.truncatedSquaredThreshold(threshold);
+		int[] pixels = this.getRaster();
+		int black = Color.black.getRGB();
+		int white = Color.white.getRGB();
+		int[] previous = new int[width];
+		int[] current = new int[width];
+
 		for (int h = 0; h < height; h++) {
-			for (int w = 0; w < width; w++) {
+			FilterProgress.checkpoint(h, height);
+			int index = h * width;
+			System.arraycopy(pixels, index, current, 0, width);
+			for (int w = 0; w < width; w++, index++) {
 				int norDis = 0;
 				int leftDis = 0;
 				if (h != 0) {
-					norDis = (int) colorDistance(this.getPixel(w, h),
-							this.getPixel(w, h - 1));
+					norDis = Pixel.colorDistanceSquared(current[w],
+							previous[w]);
 				}
 				if (w != 0) {
-					leftDis = (int) colorDistance(this.getPixel(w, h),
-							this.getPixel(w - 1, h));
+					leftDis = Pixel.colorDistanceSquared(current[w],
+							current[w - 1]);
 				}
-				Pixel thePix = newPic.getPixel(w, h);
-				thePix.setAlpha(255);
-				if (norDis > threshold || leftDis > threshold) {
-					thePix.setColor(Color.black);
+				if (norDis > limit || leftDis > limit) {
+					pixels[index] = black;
 				} else {
-					thePix.setColor(Color.white);
+					pixels[index] = white;
 				}
 			}
-		}
-		return newPic;
-	}
-
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		this.pixelsChanged();
+		return this;
+	}
+
 
 	// ////////////////////////////// Level 3 //////////////////////////////////
 
@@ -827,9 +929,8 @@ public class Picture extends SimplePicture {
 	 *         189: ' (Picture.BMP_APOSTROPHE) 190 to 208: ` (Picture.BMP_GRAVE)
 	 *         209 to 227: . (Picture.BMP_DOT) 228 to 255: (Picture.BMP_SPACE)
 	 * 
-	 *         We provide a getAsciiPic method to obtain the Picture object
-	 *         corresponding to a character, given any of the static Strings
-	 *         mentioned above.
+	 *         The glyphs are kept by AsciiArt, which does the conversion in
+	 *         one pass over this Picture without making a grayscale copy.
 	 * 
 	 *         Note that the resultant Picture should be the exact same size as
 	 *         the original Picture; this might involve characters being
@@ -837,15 +938,18 @@ public class Picture extends SimplePicture {
 	 */
 
 	public Picture convertToAscii() {
-		Picture analyzePic = this.grayscale();
-		Picture newPic = new Picture(this.getWidth(), this.getHeight());
-		for (int w = 0; w < this.getWidth(); w += 10) {
-			for (int h = 0; h < this.getHeight(); h += 20) {
-				int average = Picture.accumChunkColor(w, h, analyzePic);
-				replaceWithAscii(w, h, newPic, getAsciiPic(average));
-			}
-		}
-		return newPic;
+		return AsciiArt.convert(this);
+	}
+
+	/**
+	 * Converts this Picture into ASCII art in place; see convertToAscii().
+	 * Each row of chunks is averaged before its glyphs are copied in, so no
+	 * copy of this Picture is needed. Each pixel keeps its alpha.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture convertToAsciiInPlace() {
+		return AsciiArt.convertInPlace(this);
 	}
 
 	/**
@@ -858,16 +962,16 @@ public class Picture extends SimplePicture {
 	 * @return int of average value
 	 */
 	private static int accumChunkColor(int initX, int initY, Picture pic) {
-		int average = 0;
-		int accumWidth = 0;
-		int accumHeight = 0;
-		for (int w = initX; w < (initX + 10) && w < pic.getWidth(); w++, accumWidth++) {
-			accumHeight = 0;
-			for (int h = initY; h < (initY + 20) && h < pic.getHeight(); h++, accumHeight++) {
-				average += pic.getPixel(w, h).getAverage();
+		// The total of the pixel averages, and the number of pixels.
+		final int[] accum = new int[2];
+		pic.forEachPixel(initX, initY, 10, 20, new PixelVisitor() {
+			public void visit(int x, int y, int value) {
+				accum[0] += (Pixel.getRed(value) + Pixel.getGreen(value)
+						+ Pixel.getBlue(value)) / 3;
+				accum[1]++;
 			}
-		}
-		return average / (accumWidth * accumHeight);
+		});
+		return accum[0] / accum[1];
 	}
 
 	/**
@@ -878,14 +982,15 @@ public class Picture extends SimplePicture {
 	 * @param pic
 	 * @param replace
 	 */
-	private void replaceWithAscii(int initX, int initY, Picture pic,
-			Picture replace) {
-		for (int w = initX; w < (initX + 10) && w < pic.getWidth(); w++) {
-			for (int h = initY; h < (initY + 20) && h < pic.getHeight(); h++) {
-				Color toSet = replace.getPixel(w - initX, h - initY).getColor();
-				pic.getPixel(w, h).setColor(toSet);
+	private void replaceWithAscii(final int initX, final int initY,
+			final Picture pic, final Picture replace) {
+		pic.forEachPixel(initX, initY, 10, 20, new PixelVisitor() {
+			public void visit(int w, int h, int value) {
+				int toSet = replace.getBasicPixel(w - initX, h - initY);
+				pic.setBasicPixel(w, h, (value & 0xff000000)
+						| (toSet & 0xffffff));
 			}
-		}
+		});
 	}
 
 
@@ -937,6 +1042,10 @@ public class Picture extends SimplePicture {
 	 * 
 	 * The red, blue, green and alpha values should each be averaged separately.
 	 * 
+	 * The averages are computed by SummedAreaBlur, which gives the same
+	 * result as calling averagePatch on every pixel, but in time linear in the
+	 * size of the picture regardless of blurThreshold.
+	 * 
 	 * @param blurThreshold
 	 *            Size of the blurring square around the pixel.
 	 * 
@@ -948,18 +1057,33 @@ public class Picture extends SimplePicture {
 			int width = this.getWidth();
 			int height = this.getHeight();
 			Picture newPic = new Picture(width, height);
-			for (int w = 0; w < width; w++) {
-				for (int h = 0; h < height; h++) {
-					Color newColor = averagePatch(w, h, blurThreshold);
-					newPic.getPixel(w, h).setColor(newColor);
-				}
-			}
+			SummedAreaBlur.blur(this.getRaster(), newPic.getRaster(), width,
+					height, blurThreshold);
 			return newPic;
 		} else {
 			return this;
 		}
 	}
 
+	/**
+	 * Blurs this Picture in place; see blur(int). Only the rows still needed
+	 * to blur the rows below them are kept, so the extra memory is about
+	 * (blurThreshold + 1) rows.
+	 * 
+	 * @param blurThreshold
+	 *            Size of the blurring square around the pixel.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture blurInPlace(int blurThreshold) {
+		if (blurThreshold > 0) {
+			SummedAreaBlur.blurInPlace(this.getRaster(), this.getWidth(),
+					this.getHeight(), blurThreshold);
+			this.pixelsChanged();
+		}
+		return this;
+	}
+
 	/**
 	 * Helper method that calculates the average Color of a patch of pixels
 	 * within the range of the current pixel.
@@ -970,27 +1094,22 @@ public class Picture extends SimplePicture {
 	 * @return Color average color
 	 */
 	public Color averagePatch(int width, int height, int range) {
-		int reds = 0;
-		int blues = 0;
-		int greens = 0;
-		int alphas = 0;
-		int totPixels = 0;
-		for (int x = width - range; x <= width + range; x++) {
-			for (int y = height - range; y <= height + range; y++) {
-				if (x < 0 || y < 0 || x >= this.getWidth()
-						|| y >= this.getHeight()) {
-					continue;
-				}
-				totPixels++;
-				Pixel thePix = this.getPixel(x, y);
-				reds += thePix.getRed();
-				blues += thePix.getBlue();
-				greens += thePix.getGreen();
-				alphas += thePix.getAlpha();
+		// Sums of red, green, blue and alpha, and the number of pixels;
+		// pixels outside the picture are skipped by forEachPixel.
+		final int[] sums = new int[5];
+		this.forEachPixel(width - range, height - range, 2 * range + 1,
+				2 * range + 1, new PixelVisitor() {
+			public void visit(int x, int y, int value) {
+				sums[0] += Pixel.getRed(value);
+				sums[1] += Pixel.getGreen(value);
+				sums[2] += Pixel.getBlue(value);
+				sums[3] += Pixel.getAlpha(value);
+				sums[4]++;
 			}
-		}
-		return new Color(reds / totPixels, greens / totPixels, blues
-				/ totPixels, alphas / totPixels);
+		});
+		int totPixels = sums[4];
+		return new Color(sums[0] / totPixels, sums[1] / totPixels, sums[2]
+				/ totPixels, sums[3] / totPixels);
 	}
 
 	/**
@@ -1043,6 +1162,94 @@ public class Picture extends SimplePicture {
 	}
 
 
+	/**
+	 * Box-blurs this Picture: each pixel is set to the average of the square
+	 * of side (2 * radius) + 1 centered at it, like blur, but with each
+	 * channel rounded to the nearest value rather than truncated. The blur is
+	 * computed with separable passes by SeparableBlur.
+	 * 
+	 * @param radius
+	 *            Half the side of the blurring square.
+	 * 
+	 * @return A new Picture that is the box-blurred version of this Picture.
+	 */
+	public Picture boxBlur(int radius) {
+		Picture newPic = new Picture(this.getWidth(), this.getHeight());
+		SeparableBlur.box(this.getRaster(), newPic.getRaster(),
+				this.getWidth(), this.getHeight(), radius);
+		return newPic;
+	}
+
+	/**
+	 * Box-blurs this Picture in place; see boxBlur(int). Only the rows still
+	 * needed to blur the rows below them are kept, so the extra memory is
+	 * about (2 * radius) + 1 rows for each of red, green and blue.
+	 * 
+	 * @param radius
+	 *            Half the side of the blurring square.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture boxBlurInPlace(int radius) {
+		SeparableBlur.boxInPlace(this.getRaster(), this.getWidth(),
+				this.getHeight(), radius);
+		this.pixelsChanged();
+		return this;
+	}
+
+	/**
+	 * Gaussian-blurs this Picture: each pixel is set to an average of the
+	 * pixels around it, weighted by a Gaussian of the given standard
+	 * deviation. Pixels outside the picture are ignored, as in blur.
+	 * 
+	 * @param sigma
+	 *            Standard deviation of the Gaussian, in pixels.
+	 * 
+	 * @return A new Picture that is the Gaussian-blurred version of this
+	 *         Picture.
+	 */
+	public Picture gaussianBlur(double sigma) {
+		Picture newPic = new Picture(this.getWidth(), this.getHeight());
+		SeparableBlur.gaussian(this.getRaster(), newPic.getRaster(),
+				this.getWidth(), this.getHeight(), sigma);
+		return newPic;
+	}
+
+	/**
+	 * Gaussian-blurs this Picture in place; see gaussianBlur(double). The
+	 * extra memory is about (6 * sigma) + 1 rows for each of red, green and
+	 * blue.
+	 * 
+	 * @param sigma
+	 *            Standard deviation of the Gaussian, in pixels.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture gaussianBlurInPlace(double sigma) {
+		SeparableBlur.gaussianInPlace(this.getRaster(), this.getWidth(),
+				this.getHeight(), sigma);
+		this.pixelsChanged();
+		return this;
+	}
+
+	/**
+	 * Approximates gaussianBlur(sigma) with repeated box blurs, which takes
+	 * the same time for every sigma. The result is visually very close to
+	 * gaussianBlur, but not identical.
+	 * 
+	 * @param sigma
+	 *            Standard deviation of the Gaussian, in pixels.
+	 * 
+	 * @return A new Picture that is the blurred version of this Picture.
+	 */
+	public Picture fastGaussianBlur(double sigma) {
+		Picture newPic = new Picture(this.getWidth(), this.getHeight());
+		SeparableBlur.approximateGaussian(this.getRaster(),
+				newPic.getRaster(), this.getWidth(), this.getHeight(), sigma,
+				SeparableBlur.DEFAULT_BOX_PASSES);
+		return newPic;
+	}
+
 	/**
 	 * @param x
 	 *            x-coordinate of the pixel currently selected.
@@ -1056,50 +1263,44 @@ public class Picture extends SimplePicture {
 	 * @return A new Picture where all the pixels connected to the currently
 	 *         selected pixel, and which differ from the selected pixel within
 	 *         the provided threshold (in terms of color distance), are colored
-	 *         with the new color provided.
+	 *         with the new color provided. Pixels are connected through their
+	 *         eight neighbours; the region is found with FloodFill, which
+	 *         visits each pixel at most once. The bounding box of the painted
+	 *         pixels is the new Picture's changed region; see
+	 *         takeChangedRegion.
 	 */
 
 	public Picture paintBucket(int x, int y, int threshold, Color newColor) {
-		Picture newPic = new Picture(this);
-		int width = this.getWidth();
-		int height = this.getHeight();
-		Pixel comparePix = this.getPixel(x, y);
-		LinkedList<Pixel> queue = new LinkedList<Pixel>();
-		queue.add(newPic.getPixel(x, y));
-		while (queue.size() > 0) {
-			Pixel testPix = queue.getLast();
-			queue.removeLast();
-			int xCoor = testPix.getX();
-			int yCoor = testPix.getY();
-			if (colorDistance(testPix, comparePix) <= threshold) {
-				testPix.setColor(newColor);
-				if (yCoor < height - 1) {
-					queue.add(newPic.getPixel(xCoor, yCoor + 1));
-				}
-				if (xCoor < width - 1) {
-					queue.add(newPic.getPixel(xCoor + 1, yCoor));
-				}
-				if (xCoor > 0) {
-					queue.add(newPic.getPixel(xCoor - 1, yCoor));
-				}
-				if (yCoor > 0) {
-					queue.add(newPic.getPixel(xCoor, yCoor - 1));
-				}
-				if (yCoor < height - 1 && xCoor < width - 1) {
-					queue.add(newPic.getPixel(xCoor + 1, yCoor + 1));
-				}
-				if (yCoor < height - 1 && xCoor > 0) {
-					queue.add(newPic.getPixel(xCoor - 1, yCoor + 1));
-				}
-				if (yCoor > 0 && xCoor < width - 1) {
-					queue.add(newPic.getPixel(xCoor + 1, yCoor - 1));
-				}
-				if (xCoor > 0 && yCoor > 0) {
-					queue.add(newPic.getPixel(xCoor - 1, yCoor - 1));
-				}
-			}
-		}
-		return newPic;
+		return new Picture(this).paintBucketInPlace(x, y, threshold, newColor);
+	}
+
+	/**
+	 * Colors the pixels connected to the currently selected pixel in place;
+	 * see paintBucket. The bounding box of the painted pixels is this
+	 * Picture's changed region.
+	 * 
+	 * @param x
+	 *            x-coordinate of the pixel currently selected.
+	 * @param y
+	 *            y-coordinate of the pixel currently selected.
+	 * @param threshold
+	 *            Threshold within which to delete pixels.
+	 * @param newColor
+	 *            New color to color pixels.
+	 * 
+	 * @return This Picture.
+	 */
+	public Picture paintBucketInPlace(int x, int y, int threshold,
+			Color newColor) {
+		// Checks that (x, y) is inside the picture.
+		this.getBasicPixel(x, y);
+		Rectangle painted = FloodFill.fill(this.getRaster(), this.getRaster(),
+				this.getWidth(), this.getHeight(), x, y, threshold,
+				newColor.getRGB());
+		if (painted != null)
+			this.pixelsChanged(painted.x, painted.y, painted.width,
+					painted.height);
+		return this;
 	}
 
 	// /////////////////////// PROJECT 1 ENDS HERE /////////////////////////////
@@ -1116,12 +1317,12 @@ public class Picture extends SimplePicture {
 			return false;
 		}
 
-		// Check each pixel.
-		for (int x = 0; x < this.getWidth(); x++) {
-			for (int y = 0; y < this.getHeight(); y++) {
-				if (!this.getPixel(x, y).equals(p.getPixel(x, y))) {
-					return false;
-				}
+		// Check each row of pixels.
+		int[] row = new int[this.getWidth()];
+		int[] otherRow = new int[this.getWidth()];
+		for (int y = 0; y < this.getHeight(); y++) {
+			if (!Arrays.equals(this.getRow(y, row), p.getRow(y, otherRow))) {
+				return false;
 			}
 		}
 
@@ -1136,59 +1337,6 @@ public class Picture extends SimplePicture {
 		return new Picture(url.getFile().replaceAll("%20", " "));
 	}
 
-	/**
-	 * Helper method for loading the pictures corresponding to each character
-	 * for the ASCII art conversion.
-	 */
-	private static Picture getAsciiPic(int grayValue) {
-		int asciiIndex = (int) grayValue / 19;
-
-		if (BMP_AMPERSAND == null) {
-			BMP_AMPERSAND = Picture.loadPicture("ampersand.bmp");
-			BMP_APOSTROPHE = Picture.loadPicture("apostrophe.bmp");
-			BMP_AT = Picture.loadPicture("at.bmp");
-			BMP_BAR = Picture.loadPicture("bar.bmp");
-			BMP_COLON = Picture.loadPicture("colon.bmp");
-			BMP_DOLLAR = Picture.loadPicture("dollar.bmp");
-			BMP_DOT = Picture.loadPicture("dot.bmp");
-			BMP_EXCLAMATION = Picture.loadPicture("exclamation.bmp");
-			BMP_GRAVE = Picture.loadPicture("grave.bmp");
-			BMP_HASH = Picture.loadPicture("hash.bmp");
-			BMP_PERCENT = Picture.loadPicture("percent.bmp");
-			BMP_SEMICOLON = Picture.loadPicture("semicolon.bmp");
-			BMP_SPACE = Picture.loadPicture("space.bmp");
-		}
-
-		switch (asciiIndex) {
-		case 0:
-			return Picture.BMP_HASH;
-		case 1:
-			return Picture.BMP_AT;
-		case 2:
-			return Picture.BMP_AMPERSAND;
-		case 3:
-			return Picture.BMP_DOLLAR;
-		case 4:
-			return Picture.BMP_PERCENT;
-		case 5:
-			return Picture.BMP_BAR;
-		case 6:
-			return Picture.BMP_EXCLAMATION;
-		case 7:
-			return Picture.BMP_SEMICOLON;
-		case 8:
-			return Picture.BMP_COLON;
-		case 9:
-			return Picture.BMP_APOSTROPHE;
-		case 10:
-			return Picture.BMP_GRAVE;
-		case 11:
-			return Picture.BMP_DOT;
-		default:
-			return Picture.BMP_SPACE;
-		}
-	}
-
 	public static void main(String[] args) {
 		Picture initialPicture = new Picture(
 				FileChooser.pickAFile(FileChooser.OPEN));
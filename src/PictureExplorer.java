@@ -2,8 +2,12 @@ package src;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.*;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -139,6 +143,18 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 	private static final String addRed 	 = "Add Red";
 	private static final String addGreen = "Add Green";
 	private static final String addBlue	 = "Add Blue";
+
+	// Status bar shown while an effect runs in the background.
+	private JPanel statusPanel;
+	private JLabel statusLabel;
+	private JProgressBar progressBar;
+	private JButton cancelButton;
+
+	private static final String cancel = "Cancel";
+
+	/* Longest side, in pixels, of the reduced copy of the picture that
+	 * previews of slow effects are computed on. */
+	private static final int previewSize = 256;
 	
 	
 
@@ -171,6 +187,9 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 	 * 	0 means starting at 0, 1 means starting at 1. */
 	private int numberBase = 0;
 
+	/** The effect running in the background, or null if none is. */
+	private EffectWorker effectWorker;
+
 	/**
 	 * Public constructor.
 	 * 
@@ -362,8 +381,10 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 
 		scrollPane = new JScrollPane();
 
-		BufferedImage bimg = picture.getBufferedImage();
-		imageDisplay = new ImageDisplay(bimg);
+		imageDisplay = new ImageDisplay(picture);
+		imageDisplay.setZoom(zoomFactor);
+		imageDisplay.setCurrentX((int) (xIndex * zoomFactor));
+		imageDisplay.setCurrentY((int) (yIndex * zoomFactor));
 		imageDisplay.addMouseMotionListener(this);
 		imageDisplay.addMouseListener(this);
 		imageDisplay.setToolTipText(imageDisplayTooltip);
@@ -386,6 +407,9 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 		// Create the information panel.
 		createInfoPanel();
 
+		// Create the status panel for effects running in the background.
+		createStatusPanel();
+
 		// Create the scrollpane for the picture.
 		createAndInitScrollingImage();
 
@@ -610,6 +634,66 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 		pictureFrame.getContentPane().add(BorderLayout.NORTH, infoPanel);
 	} 
 
+	/**
+	 * Creates the south JPanel that shows the progress of the effect being
+	 * 	applied, with a button to cancel it. It is only visible while an
+	 * 	effect runs.
+	 */
+	private void createStatusPanel() {
+		statusPanel = new JPanel();
+		statusPanel.setLayout(new FlowLayout());
+		statusLabel = new JLabel();
+		progressBar = new JProgressBar(0, 100);
+		progressBar.setStringPainted(true);
+		cancelButton = new JButton(cancel);
+		cancelButton.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				if (effectWorker != null)
+					effectWorker.cancelEffect();
+			}
+		});
+
+		statusPanel.add(statusLabel);
+		statusPanel.add(progressBar);
+		statusPanel.add(cancelButton);
+		statusPanel.setVisible(false);
+		pictureFrame.getContentPane().add(BorderLayout.SOUTH, statusPanel);
+	}
+
+	/**
+	 * Starts applying an effect to the picture in the background. The
+	 * 	effect menus are disabled until it finishes, and the picture shown
+	 * 	is only replaced once the result is ready.
+	 * 
+	 * @param name The name of the effect, to show while it runs.
+	 * @param effect The effect to apply.
+	 */
+	private void runEffect(String name, Effect effect) {
+		if (effectWorker != null)
+			return;
+
+		setEffectItemsEnabled(false);
+		statusLabel.setText(name + "...");
+		progressBar.setValue(0);
+		statusPanel.setVisible(true);
+		pictureFrame.validate();
+
+		effectWorker = new EffectWorker(name, effect, picture);
+		effectWorker.execute();
+	}
+
+	/**
+	 * Enables or disables the menus that change the picture.
+	 * 
+	 * @param enabled Whether the menus should be enabled.
+	 */
+	private void setEffectItemsEnabled(boolean enabled) {
+		openMenuItem.setEnabled(enabled);
+		pictureEffectsMenu.setEnabled(enabled);
+		rotateflipMenu.setEnabled(enabled);
+		changeColorMenu.setEnabled(enabled);
+	}
+
 	/**
 	 * Checks that the current position is in the viewing area and if
 	 * 	not, scroll to center the current position, if possible.
@@ -656,8 +740,8 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 	}
 
 	/**
-	 * Zooms in on the picture by scaling the image.
-	 * Caution: It is extremely memory intensive.
+	 * Zooms in on the picture by scaling the image. Only the part of
+	 * 	the image in view is scaled, a tile at a time; see ImageDisplay.
 	 * 
 	 * @param factor The amount to zoom by.
 	 */
@@ -665,14 +749,8 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 		// Save the current zoom factor.
 		zoomFactor = factor;
 
-		// Calculate the new width and height and get an image that size.
-		int width = (int)(picture.getWidth() * zoomFactor);
-		int height = (int)(picture.getHeight() * zoomFactor);
-		BufferedImage bimg = picture.getBufferedImage();
-
-		// Set the scroll image icon to the new image.
-		imageDisplay.setImage(bimg.getScaledInstance(width, height,
-				Image.SCALE_DEFAULT));
+		// Draw the image at the new scale.
+		imageDisplay.setZoom(zoomFactor);
 		imageDisplay.setCurrentX((int) (xIndex * zoomFactor));
 		imageDisplay.setCurrentY((int) (yIndex * zoomFactor));
 		imageDisplay.revalidate();
@@ -982,86 +1060,160 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 		}
 
 		if (a.getActionCommand().equals(grayscale)) {
-			picture = new Picture(picture.grayscale());
-			createAndInitScrollingImage();
+			runEffect(grayscale, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.grayscale();
+				}
+			});
 		}
 		if (a.getActionCommand().equals(negate)) {
-			picture = new Picture(picture.negate());
-			createAndInitScrollingImage();
+			runEffect(negate, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.negate();
+				}
+			});
 		}
 
 		if (a.getActionCommand().equals(chromakey)) {
-			int threshold =  getParameterValue("the color threshold", 1, 100);			
-			picture = new Picture(picture.chromaKey(xIndex, yIndex, new Picture(FileChooser.pickAFile(FileChooser.OPEN)), threshold));
-			createAndInitScrollingImage();
+			final int threshold =  getParameterValue("the color threshold", 1, 100);			
+			final String background = FileChooser.pickAFile(FileChooser.OPEN);
+			final int x = xIndex;
+			final int y = yIndex;
+			runEffect(chromakey, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.chromaKey(x, y, new Picture(background), threshold);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(rotate)) {
-			picture = new Picture(picture.rotate(1));
-			createAndInitScrollingImage();
+			runEffect(rotate, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.rotate(1);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(blur)) {
-			int blurThreshold =  getParameterValue("the blur threshold", 1, 5);
-			picture = new Picture(picture.blur(blurThreshold));
-			createAndInitScrollingImage();
+			final int blurThreshold =  getParameterValue("the blur threshold", 1, 5);
+			runEffect(blur, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.blur(blurThreshold);
+				}
+
+				public boolean hasPreview() {
+					return true;
+				}
+
+				public Picture preview(Picture proxy, double scale) {
+					// Scale the blurring square along with the picture.
+					int proxyThreshold = (int) Math.round(blurThreshold * scale);
+					return proxy.blur(Math.max(proxyThreshold, 1));
+				}
+			});
 		}
 		if (a.getActionCommand().equals(showEdges)) {
-			int threshold =  getParameterValue("the edge threshold", 1, 100);
-			picture = new Picture(picture.showEdges(threshold));
-			createAndInitScrollingImage();
+			final int threshold =  getParameterValue("the edge threshold", 1, 100);
+			runEffect(showEdges, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.showEdges(threshold);
+				}
+
+				public boolean hasPreview() {
+					return true;
+				}
+
+				public Picture preview(Picture proxy, double scale) {
+					return proxy.showEdges(threshold);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(flipHorz)) {
-			picture = picture.flip(Picture.HORIZONTAL);
-			// repaint();
-			createAndInitScrollingImage();
+			runEffect(flipHorz, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.flip(Picture.HORIZONTAL);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(flipVert)) {
-			picture = picture.flip(Picture.VERTICAL);
-			// repaint();
-			createAndInitScrollingImage();
+			runEffect(flipVert, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.flip(Picture.VERTICAL);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(flipForward)) {
-			picture = picture.flip(Picture.FORWARD_DIAGONAL);
-			// repaint();
-			createAndInitScrollingImage();
+			runEffect(flipForward, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.flip(Picture.FORWARD_DIAGONAL);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(flipBackward)) {
-			picture = picture.flip(Picture.BACKWARD_DIAGONAL);
-			// repaint();
-			createAndInitScrollingImage();
+			runEffect(flipBackward, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.flip(Picture.BACKWARD_DIAGONAL);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(ascii)) {
-			picture = new Picture(picture.convertToAscii());
-			createAndInitScrollingImage();
+			runEffect(ascii, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.convertToAscii();
+				}
+			});
 		}
 		if (a.getActionCommand().equals(paintBucket)) {
-			int threshold =  getParameterValue("the color threshold", 1, 100);
-			picture = new Picture(picture.paintBucket(xIndex, yIndex, threshold, new Color(0, 0, 255)));
-			createAndInitScrollingImage();
+			final int threshold =  getParameterValue("the color threshold", 1, 100);
+			final int x = xIndex;
+			final int y = yIndex;
+			runEffect(paintBucket, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.paintBucket(x, y, threshold, new Color(0, 0, 255));
+				}
+
+				public Rectangle changedRegion(Picture result) {
+					return result.takeChangedRegion();
+				}
+			});
 		}
 		if (a.getActionCommand().equals(lighten)) {
-			int value =  getParameterValue("the amount to increase all colors ", 1, 255);
-			picture = new Picture(picture.lighten(value));
-			createAndInitScrollingImage();
+			final int value =  getParameterValue("the amount to increase all colors ", 1, 255);
+			runEffect(lighten, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.lighten(value);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(darken)) {
-			int value =  getParameterValue("the amount to decrease all colors ", 1, 255);
-			picture = new Picture(picture.darken(value));
-			createAndInitScrollingImage();
+			final int value =  getParameterValue("the amount to decrease all colors ", 1, 255);
+			runEffect(darken, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.darken(value);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(addRed)) {
-			int value =  getParameterValue("the amount to increase red", 1, 255);
-			picture = new Picture(picture.addRed(value));
-			createAndInitScrollingImage();
+			final int value =  getParameterValue("the amount to increase red", 1, 255);
+			runEffect(addRed, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.addRed(value);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(addGreen)) {
-			int value =  getParameterValue("the amount to increase green", 1, 255);
-			picture = new Picture(picture.addGreen(value));
-			createAndInitScrollingImage();
+			final int value =  getParameterValue("the amount to increase green", 1, 255);
+			runEffect(addGreen, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.addGreen(value);
+				}
+			});
 		}
 		if (a.getActionCommand().equals(addBlue)) {
-			int value =  getParameterValue("the amount to increase blue", 1, 255);
-			picture = new Picture(picture.addBlue(value));
-			createAndInitScrollingImage();
+			final int value =  getParameterValue("the amount to increase blue", 1, 255);
+			runEffect(addBlue, new Effect() {
+				public Picture apply(Picture picture) {
+					return picture.addBlue(value);
+				}
+			});
 		}
 	}
 
@@ -1121,6 +1273,200 @@ public class PictureExplorer implements MouseMotionListener, ActionListener, Mou
 		}
 
 	}
+	/**
+	 * An effect that the explorer applies to its picture. Slow effects can
+	 * 	also give a preview computed on a reduced copy of the picture,
+	 * 	which is shown while the full result is computed.
+	 */
+	private abstract static class Effect
+	{
+		/**
+		 * @param picture The picture to apply the effect to.
+		 * 
+		 * @return The new picture to explore.
+		 */
+		abstract Picture apply(Picture picture);
+
+		/**
+		 * @return Whether this effect overrides preview. The reduced copy
+		 * 	of the picture is only made for effects that do.
+		 */
+		boolean hasPreview() {
+			return false;
+		}
+
+		/**
+		 * @param proxy A reduced copy of the picture.
+		 * @param scale The size of the proxy relative to the picture.
+		 * 
+		 * @return The effect applied to the proxy, or null for no preview.
+		 */
+		Picture preview(Picture proxy, double scale) {
+			return null;
+		}
+
+		/**
+		 * @param result The picture returned by apply.
+		 * 
+		 * @return The region where the result differs from the picture
+		 * 	the effect was applied to, or null if it may differ anywhere.
+		 */
+		Rectangle changedRegion(Picture result) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param picture A picture.
+	 * 
+	 * @return A copy of the picture reduced so that its longest side is
+	 * 	previewSize pixels, or null if the picture is not much larger than
+	 * 	that.
+	 */
+	private static Picture createProxy(Picture picture) {
+		int longest = Math.max(picture.getWidth(), picture.getHeight());
+		if (longest <= 2 * previewSize)
+			return null;
+		double scale = (double) previewSize / longest;
+		int height = (int) Math.round(picture.getHeight() * scale);
+		if (height < 1 || (int) (picture.getWidth() * scale) < 1)
+			return null;
+		return new Picture(picture.getPictureWithHeight(height));
+	}
+
+	/**
+	 * Applies an effect on a background thread, reporting its progress to
+	 * 	the status panel, and shows the result once it is ready. If the
+	 * 	effect has a preview, it is computed first and shown stretched
+	 * 	over the picture in the meantime.
+	 * 
+	 * A cancelled effect only stops at its next checkpoint, so the effect
+	 * 	menus stay disabled until the background thread has actually
+	 * 	returned, not just until done is called.
+	 */
+	private class EffectWorker extends SwingWorker<Picture, Picture>
+	{
+		private final String name;
+		private final Effect effect;
+		private final Picture source;
+		private final FilterProgress progress;
+
+		/**
+		 * Whether doInBackground has returned, and whether done has been
+		 * 	called. Only used on the event dispatch thread.
+		 */
+		private boolean backgroundFinished = false;
+		private boolean doneCalled = false;
+
+		EffectWorker(String name, Effect effect, Picture source) {
+			this.name = name;
+			this.effect = effect;
+			this.source = source;
+			progress = new FilterProgress(new FilterProgress.Listener() {
+				public void progressed(int percent) {
+					setProgress(percent);
+				}
+			});
+			addPropertyChangeListener(new PropertyChangeListener() {
+				public void propertyChange(PropertyChangeEvent evt) {
+					if ("progress".equals(evt.getPropertyName()))
+						progressBar.setValue((Integer) evt.getNewValue());
+				}
+			});
+		}
+
+		/**
+		 * Stops the effect at its next row and discards its result.
+		 */
+		void cancelEffect() {
+			progress.cancel();
+			cancel(false);
+			statusLabel.setText(name + " (cancelling)...");
+			cancelButton.setEnabled(false);
+		}
+
+		protected Picture doInBackground() {
+			try {
+				Picture proxy = effect.hasPreview() ? createProxy(source) : null;
+				if (proxy != null) {
+					double scale =
+							(double) proxy.getHeight() / source.getHeight();
+					Picture preview = effect.preview(proxy, scale);
+					if (preview != null)
+						publish(preview);
+				}
+				progress.checkCancelled();
+
+				FilterProgress previous = FilterProgress.setCurrent(progress);
+				try {
+					return effect.apply(source);
+				} finally {
+					FilterProgress.setCurrent(previous);
+				}
+			} finally {
+				SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						backgroundFinished = true;
+						finishIfStopped();
+					}
+				});
+			}
+		}
+
+		protected void process(List<Picture> previews) {
+			if (!isCancelled()) {
+				statusLabel.setText(name + " (preview)...");
+				imageDisplay.setPreview(
+						previews.get(previews.size() - 1).getBufferedImage());
+			}
+		}
+
+		protected void done() {
+			doneCalled = true;
+			imageDisplay.setPreview(null);
+			if (isCancelled()) {
+				finishIfStopped();
+				return;
+			}
+
+			try {
+				Picture result = get();
+				if (result.getWidth() == picture.getWidth()
+						&& result.getHeight() == picture.getHeight()) {
+					// Keep the display, redrawing only what changed.
+					picture = result;
+					imageDisplay.setPicture(picture,
+							effect.changedRegion(picture));
+				} else {
+					picture = result;
+					createAndInitScrollingImage();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				JOptionPane.showMessageDialog(pictureFrame,
+					    "Could not apply " + name + ": " + e.getCause(),
+					    "Effect Error",
+					    JOptionPane.ERROR_MESSAGE);
+			}
+			finishIfStopped();
+		}
+
+		/**
+		 * Hides the status panel and lets another effect start, once both
+		 * 	the background thread has returned and done has been called.
+		 */
+		private void finishIfStopped() {
+			if (!backgroundFinished || !doneCalled)
+				return;
+			effectWorker = null;
+			statusPanel.setVisible(false);
+			cancelButton.setEnabled(true);
+			setEffectItemsEnabled(true);
+			pictureFrame.validate();
+		}
+	}
+
 	/**
 	 * Class for establishing the focus for the textfields.
 	 */
@@ -0,0 +1,233 @@
+package src;
+
+/**
+ * One of the Picture effects that keep the size of the picture, packaged
+ * 	so that it can be applied to pictures it has not seen yet, such as
+ * 	the strips of a large file read by StripProcessor.
+ *
+ * Besides applying the effect, a filter reports its halo: how many rows
+ * 	above and below a pixel the effect reads to compute it. A point
+ * 	filter like grayscale has no halo, showEdges has a halo of one row and
+ * 	blur(n) has a halo of n rows. Applying a filter to a strip of rows
+ * 	gives the same result as applying it to the whole picture for every
+ * 	row at least halo rows away from the cut edges of the strip.
+ */
+public abstract class PictureFilter
+{
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Applies this filter.
+	 *
+	 * @param picture The Picture to filter. It is not modified.
+	 *
+	 * @return A Picture of the same size holding the result. It may be the
+	 * 	Picture given if the filter leaves it unchanged.
+	 */
+	public abstract Picture apply(Picture picture);
+
+	/**
+	 * @return The number of rows above and below each pixel that this
+	 * 	filter reads.
+	 */
+	public int halo() {
+		return 0;
+	}
+
+	/**
+	 * @return The filter for Picture.grayscale().
+	 */
+	public static PictureFilter grayscale() {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) { return picture.grayscale(); }
+		};
+	}
+
+	/**
+	 * @return The filter for Picture.negate().
+	 */
+	public static PictureFilter negate() {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) { return picture.negate(); }
+		};
+	}
+
+	/**
+	 * @param amount The amount to lighten by.
+	 *
+	 * @return The filter for Picture.lighten(amount).
+	 */
+	public static PictureFilter lighten(final int amount) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.lighten(amount);
+			}
+		};
+	}
+
+	/**
+	 * @param amount The amount to darken by.
+	 *
+	 * @return The filter for Picture.darken(amount).
+	 */
+	public static PictureFilter darken(final int amount) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.darken(amount);
+			}
+		};
+	}
+
+	/**
+	 * @param amount The amount of red to add.
+	 *
+	 * @return The filter for Picture.addRed(amount).
+	 */
+	public static PictureFilter addRed(final int amount) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.addRed(amount);
+			}
+		};
+	}
+
+	/**
+	 * @param amount The amount of green to add.
+	 *
+	 * @return The filter for Picture.addGreen(amount).
+	 */
+	public static PictureFilter addGreen(final int amount) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.addGreen(amount);
+			}
+		};
+	}
+
+	/**
+	 * @param amount The amount of blue to add.
+	 *
+	 * @return The filter for Picture.addBlue(amount).
+	 */
+	public static PictureFilter addBlue(final int amount) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.addBlue(amount);
+			}
+		};
+	}
+
+	/**
+	 * @param blurThreshold Size of the blurring square around each pixel.
+	 *
+	 * @return The filter for Picture.blur(blurThreshold).
+	 */
+	public static PictureFilter blur(final int blurThreshold) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.blur(blurThreshold);
+			}
+
+			public int halo() { return Math.max(blurThreshold, 0); }
+		};
+	}
+
+	/**
+	 * @param radius Half the side of the box, not counting the center.
+	 *
+	 * @return The filter for Picture.boxBlur(radius).
+	 */
+	public static PictureFilter boxBlur(final int radius) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.boxBlur(radius);
+			}
+
+			public int halo() { return Math.max(radius, 0); }
+		};
+	}
+
+	/**
+	 * @param sigma The standard deviation of the Gaussian, in pixels.
+	 *
+	 * @return The filter for Picture.gaussianBlur(sigma).
+	 */
+	public static PictureFilter gaussianBlur(final double sigma) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.gaussianBlur(sigma);
+			}
+
+			public int halo() { return Math.max((int) Math.ceil(3 * sigma), 0); }
+		};
+	}
+
+	/**
+	 * @param sigma The standard deviation of the Gaussian, in pixels.
+	 *
+	 * @return The filter for Picture.fastGaussianBlur(sigma).
+	 */
+	public static PictureFilter fastGaussianBlur(final double sigma) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.fastGaussianBlur(sigma);
+			}
+
+			public int halo() {
+				// Each box pass spreads the picture by its own radius.
+				int halo = 0;
+				for (int radius : SeparableBlur.boxRadii(sigma,
+						SeparableBlur.DEFAULT_BOX_PASSES))
+					halo += radius;
+				return halo;
+			}
+		};
+	}
+
+	/**
+	 * @param threshold Threshold to use to determine the presence of edges.
+	 *
+	 * @return The filter for Picture.showEdges(threshold).
+	 */
+	public static PictureFilter showEdges(final int threshold) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				return picture.showEdges(threshold);
+			}
+
+			public int halo() { return 1; }
+		};
+	}
+
+	/**
+	 * @param filters The filters to apply, in order.
+	 *
+	 * @return A filter applying each of the filters to the result of the
+	 * 	one before. Its halo is the sum of theirs. Intermediate results
+	 * 	are released as soon as the next filter is done with them, so
+	 * 	with a RasterPool their rasters are reused along the chain.
+	 */
+	public static PictureFilter chain(final PictureFilter... filters) {
+		return new PictureFilter() {
+			public Picture apply(Picture picture) {
+				Picture result = picture;
+				for (PictureFilter filter : filters) {
+					Picture next = filter.apply(result);
+					if (result != picture && result != next)
+						result.release();
+					result = next;
+				}
+				return result;
+			}
+
+			public int halo() {
+				int halo = 0;
+				for (PictureFilter filter : filters)
+					halo += filter.halo();
+				return halo;
+			}
+		};
+	}
+
+} // End of PictureFilter class.
@@ -1,5 +1,7 @@
 package src;
 import javax.swing.*;
+import java.awt.Insets;
+import java.awt.Rectangle;
 
 /**
  * Class that holds a DigitalPicture and displays it.
@@ -92,8 +94,10 @@ public class PictureFrame
 		// Only do this if there is a picture.
 		if (picture != null)
 		{
-			// Sets the image for the image icon from the picture.
-			imageIcon.setImage(picture.getImage());
+			// Sets the image for the image icon from the picture, unless it
+			// already shows it.
+			if (imageIcon.getImage() != picture.getImage())
+				imageIcon.setImage(picture.getImage());
 
 			// Sets the title of the frame to the title of the picture.
 			setTitle(picture.getTitle());
@@ -159,15 +163,35 @@ public class PictureFrame
 	}
 
 	/**
-	 * Forces this PictureFrame to repaint (redraw).
+	 * Forces this PictureFrame to repaint (redraw). If the picture knows
+	 * 	which of its pixels changed since the last repaint, only those
+	 * 	are redrawn.
 	 */
 	public void repaint()
 	{
 		// Make the frame visible.
 		frame.setVisible(true);
 
+		// Find what changed before the image is updated.
+		Rectangle changed = null;
+		if (picture != null && imageIcon.getImage() == picture.getImage())
+			changed = picture.takeChangedRegion();
+
 		// Update the image from the picture.
 		updateImage();
+
+		if (changed != null)
+		{
+			// Only redraw the part of the label showing the changed pixels.
+			Insets insets = label.getInsets();
+			int iconX = insets.left + (label.getWidth() - insets.left
+					- insets.right - imageIcon.getIconWidth()) / 2;
+			int iconY = insets.top + (label.getHeight() - insets.top
+					- insets.bottom - imageIcon.getIconHeight()) / 2;
+			label.repaint(iconX + changed.x, iconY + changed.y,
+					changed.width, changed.height);
+			return;
+		}
 		
 		// Tell the JFrame to handle the repaint.
 		frame.repaint();
@@ -1,7 +1,12 @@
 package src;
 import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import javax.imageio.ImageIO;
 
 import junit.framework.TestCase;
+import java.util.Arrays;
 import java.util.LinkedList;
 import static org.junit.Assert.*;
 
@@ -21,6 +26,32 @@ public class PictureTest extends TestCase {
 		assertTrue(Picture.helpersWork());
 		
 	}
+	/**
+	 * Validate that the raster and the row and region accessors see the
+	 * same pixels as getBasicPixel and the BufferedImage.
+	 */
+	public void testRasterAccess()
+	{
+		Picture pic = Picture.loadPicture("Colleen.bmp");
+		int width = pic.getWidth();
+		int[] row = pic.getRow(17, null);
+		for (int w = 0; w < width; w++) {
+			assertEquals(pic.getBasicPixel(w, 17), row[w]);
+			assertEquals(pic.getBufferedImage().getRGB(w, 17), row[w]);
+			assertEquals(pic.getBasicPixel(w, 17) & 0xffffff,
+					pic.getRaster()[17 * width + w] & 0xffffff);
+		}
+		int[] region = {0xff102030, 0xff405060, 0xff708090, 0xffa0b0c0};
+		pic.setRegion(3, 5, 2, 2, region);
+		assertEquals(new Color(0x40, 0x50, 0x60), pic.getPixel(4, 5).getColor());
+		assertEquals(new Color(0x70, 0x80, 0x90), pic.getPixel(3, 6).getColor());
+		assertEquals(0xffa0b0c0, pic.getBufferedImage().getRGB(4, 6));
+		int[] copy = pic.getRegion(3, 5, 2, 2, null);
+		for (int i = 0; i < region.length; i++) {
+			assertEquals(region[i], copy[i]);
+		}
+	}
+
 	/**
 	 * Validate that grayscale works and does not modify the 
 	 * original Picture object.
@@ -47,6 +78,545 @@ public class PictureTest extends TestCase {
 		assertTrue(pic.equals(picCopy));
 		assertTrue(picCorrect.equals(picTest));
 	}
+	/**
+	 * Validate that BmpCodec reads 24-bit BMPs, including ones whose rows
+	 * need padding, exactly as ImageIO does, that it leaves other files to
+	 * ImageIO, and that what it writes reads back unchanged.
+	 */
+	public void testBmpCodec() throws Exception
+	{
+		String[] names = {"Colleen.bmp", "Creek50.bmp", "Creek150.bmp",
+				"ampersand.bmp"};
+		for (String name : names) {
+			File file = new File(Picture.loadPicture(name).getFileName());
+			BufferedImage expected = ImageIO.read(file);
+			BufferedImage actual = BmpCodec.read(file);
+			assertEquals(expected.getWidth(), actual.getWidth());
+			assertEquals(expected.getHeight(), actual.getHeight());
+			for (int y = 0; y < expected.getHeight(); y++) {
+				for (int x = 0; x < expected.getWidth(); x++) {
+					assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+				}
+			}
+		}
+		// Creek.bmp holds a JPEG and space.bmp is paletted.
+		Picture creek = Picture.loadPicture("Creek.bmp");
+		assertNull(BmpCodec.read(new File(creek.getFileName())));
+		assertNull(BmpCodec.read(new File(
+				Picture.loadPicture("space.bmp").getFileName())));
+
+		File temp = File.createTempFile("BmpCodec", ".bmp");
+		try {
+			Picture pic = creek.flip(Picture.BACKWARD_DIAGONAL);
+			pic.writeOrFail(temp.getPath());
+			assertEquals(pic, new Picture(temp.getPath()));
+			BufferedImage written = ImageIO.read(temp);
+			assertEquals(pic.getBasicPixel(7, 3), written.getRGB(7, 3));
+		} finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Validate that effects report their progress to the current
+	 * FilterProgress and stop once it is cancelled.
+	 */
+	public void testFilterProgress()
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		final LinkedList<Integer> reported = new LinkedList<Integer>();
+		FilterProgress progress = new FilterProgress(
+				new FilterProgress.Listener() {
+			public void progressed(int percent) {
+				synchronized (reported) {
+					reported.add(percent);
+				}
+			}
+		});
+		FilterProgress previous = FilterProgress.setCurrent(progress);
+		try {
+			assertEquals(pic.grayscale(), new Picture(pic).grayscale());
+			assertEquals(Integer.valueOf(100), reported.getLast());
+			reported.clear();
+			pic.blur(2);
+			assertEquals(Integer.valueOf(0), reported.getFirst());
+			assertTrue(reported.size() > 2);
+
+			progress.cancel();
+			try {
+				pic.showEdges(10);
+				fail("showEdges should stop once cancelled");
+			} catch (java.util.concurrent.CancellationException e) {
+			}
+		} finally {
+			FilterProgress.setCurrent(previous);
+		}
+		assertNull(FilterProgress.current());
+		assertEquals(pic.negate(), new Picture(pic).negate());
+	}
+
+	/**
+	 * Validate that mip levels halve the picture by averaging, and are
+	 * built again once its pixels change.
+	 */
+	public void testMipLevels()
+	{
+		Picture pic = new Picture(5, 3);
+		pic.setBasicPixel(0, 0, 0x000000);
+		pic.setBasicPixel(1, 0, 0x0000ff);
+		pic.setBasicPixel(0, 1, 0x00ff00);
+		pic.setBasicPixel(1, 1, 0xff0000);
+		assertEquals(2, pic.getMipLevelCount());
+		assertSame(pic, pic.getMipLevel(0));
+
+		SimplePicture half = pic.getMipLevel(1);
+		assertEquals(2, half.getWidth());
+		assertEquals(1, half.getHeight());
+		assertEquals(0xff404040, half.getBasicPixel(0, 0));
+		assertEquals(0xffffffff, half.getBasicPixel(1, 0));
+		assertSame(half, pic.getMipLevel(1));
+
+		pic.setBasicPixel(3, 1, 0x000000);
+		assertNotSame(half, pic.getMipLevel(1));
+		assertEquals(0xffbfbfbf, pic.getMipLevel(1).getBasicPixel(1, 0));
+
+		Picture creek = Picture.loadPicture("Creek.bmp");
+		SimplePicture thumbnail = creek.getPictureWithHeight(
+				creek.getHeight() / 5);
+		assertEquals(creek.getHeight() / 5, thumbnail.getHeight());
+		assertEquals(creek.getWidth() / 5, thumbnail.getWidth(), 1);
+
+		// Mip levels round odd widths down; the thumbnail must still be
+		// drawn all the way across.
+		Picture narrow = new Picture(11, 44);
+		narrow.setAllPixelsToAColor(Color.black);
+		thumbnail = narrow.getPictureWithHeight(8);
+		assertEquals(2, thumbnail.getWidth());
+		for (int y = 0; y < thumbnail.getHeight(); y++)
+			assertEquals(0xff000000, thumbnail.getBasicPixel(1, y));
+	}
+
+	/**
+	 * Validate that the changed region covers the pixels set since it was
+	 * last taken, and that paintBucket marks only the pixels it painted.
+	 */
+	public void testChangedRegion()
+	{
+		Picture pic = new Picture(20, 10);
+		assertEquals(new Rectangle(0, 0, 20, 10), pic.takeChangedRegion());
+		assertNull(pic.takeChangedRegion());
+
+		pic.setBasicPixel(3, 4, 0);
+		pic.setBasicPixel(7, 2, 0);
+		assertEquals(new Rectangle(3, 2, 5, 3), pic.takeChangedRegion());
+
+		Picture copy = new Picture(pic);
+		assertNull(copy.takeChangedRegion());
+		pic.pixelsChanged(15, 5, 10, 10);
+		assertEquals(new Rectangle(15, 5, 5, 5), pic.takeChangedRegion());
+
+		// The black pixels split the white picture, so the fill from the
+		// right stops at column 8.
+		for (int y = 0; y < 10; y++)
+			pic.setBasicPixel(8, y, 0);
+		Picture painted = pic.paintBucket(12, 5, 10, Color.blue);
+		assertEquals(new Rectangle(9, 0, 11, 10), painted.takeChangedRegion());
+	}
+
+	/**
+	 * Validate that chunks cut off by the edge of the picture get the top
+	 * left part of the glyph for their average gray value.
+	 */
+	public void testAsciiArtPartialChunks()
+	{
+		Picture pic = new Picture(13, 5);
+		pic.setAllPixelsToAColor(Color.black);
+		for (int y = 0; y < 3; y++)
+			pic.setBasicPixel(12, y, 0xffffff);
+		Picture ascii = pic.convertToAscii();
+
+		// The right chunk has 3 white pixels out of 15.
+		int[] hash = AsciiArt.glyphFor(0);
+		int[] ampersand = AsciiArt.glyphFor(3 * 255 / 15);
+		for (int y = 0; y < 5; y++) {
+			for (int x = 0; x < 13; x++) {
+				int expected = x < 10 ? hash[y * 10 + x]
+						: ampersand[y * 10 + x - 10];
+				assertEquals(expected | 0xff000000,
+						ascii.getBasicPixel(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Validate that BatchRunner parses filter chains into the effects they
+	 * name, and rejects unknown effects and bad parameters.
+	 */
+	public void testBatchRunnerParseChain()
+	{
+		Picture pic = Picture.loadPicture("Colleen.bmp");
+		PictureFilter filter =
+				BatchRunner.parseChain("grayscale, blur:3,showEdges:20");
+		assertEquals(pic.grayscale().blur(3).showEdges(20), filter.apply(pic));
+		assertEquals(4, filter.halo());
+		assertEquals(pic.lighten(30), BatchRunner.parseChain("lighten:30")
+				.apply(pic));
+
+		String[] bad = {"", "sharpen", "blur", "blur:x", "negate:2"};
+		for (String spec : bad) {
+			try {
+				BatchRunner.parseChain(spec);
+				fail("should reject " + spec);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	/**
+	 * Validate that BatchPipeline writes every filtered picture while
+	 * keeping the decoded pictures within its memory budget, and skips
+	 * files it cannot read.
+	 */
+	public void testBatchPipelineMemoryBudget() throws Exception
+	{
+		String[] names = {"Creek50.bmp", "Creek150.bmp", "Creek300.bmp",
+				"Creek450.bmp", "Colleen.bmp", "Creek.bmp"};
+		java.util.List<File> inputs = new LinkedList<File>();
+		for (String name : names)
+			inputs.add(new File(Picture.loadPicture(name).getFileName()));
+		File missing = new File("no such picture.bmp");
+		inputs.add(missing);
+
+		File output = File.createTempFile("BatchPipeline", "");
+		output.delete();
+		output.mkdir();
+		try {
+			// Room for one 450 by 450 picture, or a few smaller ones.
+			long budget = 450 * 450 * 4;
+			PictureFilter filter = BatchRunner.parseChain("negate,blur:2");
+			BatchPipeline.Report report = new BatchPipeline(filter, output,
+					2, 2, budget).run(inputs);
+			assertEquals(1, report.getFailed());
+			assertTrue(report.getPeakReservedBytes() <= budget + 1024);
+			for (String name : names) {
+				Picture expected = filter.apply(Picture.loadPicture(name));
+				assertEquals(expected,
+						new Picture(new File(output, name).getPath()));
+			}
+		} finally {
+			for (File file : output.listFiles())
+				file.delete();
+			output.delete();
+		}
+	}
+
+	/**
+	 * Validate the tables of the ChannelLookup curves, and that composed
+	 * lookups and lookups merged by a PointPipeline match applying them one
+	 * after another.
+	 */
+	public void testChannelLookup()
+	{
+		int value = 0xff10c8f0;
+		assertEquals(0xff3cf4ff, ChannelLookup.lighten(44).apply(value));
+		assertEquals(0xff00a4cc, ChannelLookup.darken(36).apply(value));
+		assertEquals(0xff00c8ff, ChannelLookup.add(-20, 0, 20).apply(value));
+		assertEquals(value, ChannelLookup.gamma(1).apply(value));
+		assertEquals(value, ChannelLookup.contrast(1).apply(value));
+		assertEquals(0xff00ffff, ChannelLookup.posterize(2).apply(value));
+		assertEquals(0xff00ffff, ChannelLookup.levels(100, 200, 1, 0, 255)
+				.apply(value));
+		assertEquals(0x80ef370f, ChannelLookup.levels(0, 255, 1, 255, 0)
+				.apply(0x8010c8f0));
+		assertEquals(0xff80ffff, ChannelLookup.gamma(2).apply(0xff40ffff));
+
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		ChannelLookup curve = ChannelLookup.lighten(200)
+				.then(ChannelLookup.gamma(0.6)).then(ChannelLookup.darken(90));
+		assertEquals(pic.lighten(200).applyLookup(ChannelLookup.gamma(0.6))
+				.darken(90), pic.applyLookup(curve));
+		assertEquals(pic.lighten(200).darken(90).addBlue(-30),
+				pic.pipeline().lighten(200).darken(90).addBlue(-30).toPicture());
+		assertEquals(pic.applyLookup(curve),
+				new Picture(pic).applyLookupInPlace(curve));
+		try {
+			ChannelLookup.of(new int[255]);
+			fail("made a lookup from a table without 256 entries");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Validate that the in-place variants of the effects give the same
+	 * Picture as the effects they are named after.
+	 */
+	public void testInPlaceFilters()
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		assertEquals(pic.grayscale(), new Picture(pic).grayscaleInPlace());
+		assertEquals(pic.negate(), new Picture(pic).negateInPlace());
+		assertEquals(pic.lighten(70), new Picture(pic).lightenInPlace(70));
+		assertEquals(pic.darken(70), new Picture(pic).darkenInPlace(70));
+		assertEquals(pic.addRed(90), new Picture(pic).addRedInPlace(90));
+		assertEquals(pic.addGreen(90), new Picture(pic).addGreenInPlace(90));
+		assertEquals(pic.addBlue(90), new Picture(pic).addBlueInPlace(90));
+		Picture background = Picture.loadPicture("Colleen.bmp");
+		assertEquals(pic.chromaKey(10, 10, background, 30),
+				new Picture(pic).chromaKeyInPlace(10, 10, background, 30));
+		for (int threshold : new int[] {1, 3, 1000}) {
+			assertEquals(pic.blur(threshold),
+					new Picture(pic).blurInPlace(threshold));
+		}
+		for (int threshold : new int[] {0, 30, 1000}) {
+			assertEquals(pic.paintBucket(10, 10, threshold, Color.blue),
+					new Picture(pic).paintBucketInPlace(10, 10, threshold,
+							Color.blue));
+		}
+		assertEquals(pic.convertToAscii(),
+				new Picture(pic).convertToAsciiInPlace());
+		for (int threshold : new int[] {-1, 0, 20, 1000}) {
+			assertEquals(pic.showEdges(threshold),
+					new Picture(pic).showEdgesInPlace(threshold));
+		}
+		for (int radius : new int[] {0, 1, 4, 1000}) {
+			assertEquals(pic.boxBlur(radius),
+					new Picture(pic).boxBlurInPlace(radius));
+		}
+		for (double sigma : new double[] {0, 0.7, 3, 40}) {
+			assertEquals(pic.gaussianBlur(sigma),
+					new Picture(pic).gaussianBlurInPlace(sigma));
+		}
+		assertEquals(pic.flip(Picture.HORIZONTAL),
+				new Picture(pic).flipInPlace(Picture.HORIZONTAL));
+		assertEquals(pic.flip(Picture.VERTICAL),
+				new Picture(pic).flipInPlace(Picture.VERTICAL));
+		try {
+			new Picture(pic).flipInPlace(Picture.FORWARD_DIAGONAL);
+			fail("flipped a picture that is not square about a diagonal");
+		} catch (IllegalArgumentException e) {
+		}
+
+		// Diagonal flips and rotations need a square picture.
+		Picture square = new Picture(37, 37);
+		for (int x = 0; x < 37; x++) {
+			for (int y = 0; y < 37; y++) {
+				square.setBasicPixel(x, y, pic.getBasicPixel(x, y));
+			}
+		}
+		for (int axis = Picture.HORIZONTAL; axis <= Picture.BACKWARD_DIAGONAL;
+				axis++) {
+			assertEquals(square.flip(axis), new Picture(square).flipInPlace(axis));
+		}
+		for (int rotations = -1; rotations <= 3; rotations++) {
+			assertEquals(square.rotate(rotations),
+					new Picture(square).rotateInPlace(rotations));
+		}
+	}
+
+	/**
+	 * Validate that pictures made with a RasterPool reuse released rasters
+	 * and come out the same as pictures made without one.
+	 */
+	public void testRasterPool()
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		Picture expected = pic.blur(2).negate();
+		RasterPool pool = new RasterPool();
+		RasterPool previous = RasterPool.setCurrent(pool);
+		try {
+			Picture first = pic.blur(2);
+			Picture result = first.negate();
+			assertEquals(expected, result);
+			first.release();
+			result.release();
+			assertEquals(2 * 4L * pic.getWidth() * pic.getHeight(),
+					pool.getPooledBytes());
+
+			result = PictureFilter.chain(PictureFilter.blur(2),
+					PictureFilter.negate()).apply(pic);
+			assertTrue(pool.getReused() >= 2);
+			assertEquals(expected, result);
+			result.release();
+
+			// A reused raster starts out cleared, not with the old pixels.
+			long reused = pool.getReused();
+			int[] raster = pool.borrow(pic.getWidth() * pic.getHeight());
+			assertEquals(reused + 1, pool.getReused());
+			assertTrue(Arrays.equals(new int[raster.length], raster));
+		} finally {
+			RasterPool.setCurrent(previous);
+		}
+		assertNull(RasterPool.current());
+	}
+
+	/**
+	 * Validate that filtering a BMP file in strips gives the same Picture
+	 * as filtering it whole, for filters that read neighbouring rows.
+	 */
+	public void testStripProcessor() throws Exception
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		File input = File.createTempFile("StripIn", ".bmp");
+		File output = File.createTempFile("StripOut", ".bmp");
+		try {
+			pic.writeOrFail(input.getPath());
+			PictureFilter[] filters = {
+					PictureFilter.chain(PictureFilter.grayscale(),
+							PictureFilter.blur(3)),
+					PictureFilter.showEdges(20),
+					PictureFilter.chain(PictureFilter.lighten(30),
+							PictureFilter.gaussianBlur(1.5),
+							PictureFilter.showEdges(10)) };
+			for (PictureFilter filter : filters) {
+				StripProcessor.process(input, output, filter, 7);
+				assertEquals(filter.apply(pic), new Picture(output.getPath()));
+			}
+		} finally {
+			input.delete();
+			output.delete();
+		}
+	}
+
+	/**
+	 * Validate that comparing squared color distances against the squared
+	 * thresholds makes the same decisions as comparing the distances, as
+	 * chromaKey and paintBucket do, and the rounded-down distances, as
+	 * showEdges does, for every threshold from 1 to 100.
+	 */
+	public void testSquaredThresholds()
+	{
+		for (int threshold = 1; threshold <= 100; threshold++) {
+			int limit = Pixel.squaredThreshold(threshold);
+			int truncatedLimit = Pixel.truncatedSquaredThreshold(threshold);
+			for (int d2 = 0; d2 <= Pixel.MAX_DISTANCE_SQUARED; d2++) {
+				double distance = Math.sqrt(d2);
+				assertEquals(distance <= threshold, d2 <= limit);
+				assertEquals((int) distance <= threshold, d2 <= truncatedLimit);
+			}
+		}
+		assertEquals(-1, Pixel.squaredThreshold(-1));
+		assertEquals(-1, Pixel.truncatedSquaredThreshold(-1));
+		assertEquals(Pixel.MAX_DISTANCE_SQUARED,
+				Pixel.squaredThreshold(Integer.MAX_VALUE));
+		assertEquals(Pixel.MAX_DISTANCE_SQUARED,
+				Pixel.truncatedSquaredThreshold(Integer.MAX_VALUE));
+		int white = Color.white.getRGB();
+		int black = Color.black.getRGB();
+		assertEquals(Pixel.MAX_DISTANCE_SQUARED,
+				Pixel.colorDistanceSquared(white, black));
+		assertEquals(300, Pixel.colorDistanceSquared(0x0a0a0a, black));
+	}
+
+	/**
+	 * Validate that a chain of rotations and flips combined into one
+	 * GeometricTransform gives the same Picture as applying them one by one.
+	 */
+	public void testGeometricTransformChain()
+	{
+		Picture pic = Picture.loadPicture("Colleen.bmp");
+		assertEquals(pic.rotate(1).rotate(1).rotate(1), pic.rotate(3));
+		assertEquals(pic.rotate(-1), pic.rotate(3));
+		int[] axes = {Picture.HORIZONTAL, Picture.VERTICAL,
+				Picture.FORWARD_DIAGONAL, Picture.BACKWARD_DIAGONAL};
+		for (int rotations = 0; rotations < 4; rotations++) {
+			for (int axis : axes) {
+				GeometricTransform chain = GeometricTransform
+						.rotation(rotations).then(GeometricTransform.flip(axis))
+						.then(GeometricTransform.rotation(1));
+				Picture expected = pic.rotate(rotations).flip(axis).rotate(1);
+				assertEquals(expected, pic.transform(chain));
+			}
+		}
+		assertTrue(GeometricTransform.rotation(2)
+				.then(GeometricTransform.rotation(2)).isIdentity());
+	}
+
+	/**
+	 * Validate that forEachPixel visits a region in memory order and
+	 * skips the parts of it outside the picture.
+	 */
+	public void testForEachPixel()
+	{
+		final Picture pic = Picture.loadPicture("Creek.bmp");
+		// Only columns 0 to 4 of rows 2 to 5 are inside the picture.
+		final int[] visited = {0};
+		pic.forEachPixel(-3, 2, 8, 4, new SimplePicture.PixelVisitor() {
+			public void visit(int x, int y, int value) {
+				assertEquals(visited[0] % 5, x);
+				assertEquals(2 + visited[0] / 5, y);
+				assertEquals(pic.getBasicPixel(x, y), value);
+				visited[0]++;
+			}
+		});
+		assertEquals(20, visited[0]);
+	}
+
+	/**
+	 * Validate that copyPicture copies the part two pictures have in
+	 * common and leaves the rest of the target alone.
+	 */
+	public void testCopyPictureClips()
+	{
+		Picture pic = Picture.loadPicture("Colleen.bmp");
+		Picture small = new Picture(100, 50);
+		small.copyPicture(pic);
+		for (int h = 0; h < small.getHeight(); h++) {
+			for (int w = 0; w < small.getWidth(); w++) {
+				assertEquals(pic.getPixel(w, h), small.getPixel(w, h));
+			}
+		}
+		Picture large = new Picture(200, 300);
+		large.copyPicture(pic);
+		assertEquals(pic.getPixel(149, 223), large.getPixel(149, 223));
+		assertEquals(Color.white, large.getPixel(150, 100).getColor());
+		assertEquals(Color.white, large.getPixel(100, 224).getColor());
+	}
+
+	/**
+	 * Validate that the point filters give the same result whether their
+	 * rows are processed in parallel or one after another.
+	 */
+	public void testPointFiltersParallelMatchSequential()
+	{
+		Picture pic = Picture.loadPicture("CalOriginal.bmp");
+		int threshold = BandExecutor.getParallelThreshold();
+		try {
+			BandExecutor.setParallelThreshold(Integer.MAX_VALUE);
+			Picture[] sequential = PictureTest.pointFilters(pic);
+			BandExecutor.setParallelThreshold(0);
+			Picture[] parallel = PictureTest.pointFilters(pic);
+			for (int i = 0; i < sequential.length; i++) {
+				assertTrue(sequential[i].equals(parallel[i]));
+			}
+		} finally {
+			BandExecutor.setParallelThreshold(threshold);
+		}
+	}
+
+	private static Picture[] pointFilters(Picture pic) {
+		return new Picture[] {pic.grayscale(), pic.negate(), pic.lighten(40),
+				pic.darken(40), pic.addRed(70), pic.addGreen(70),
+				pic.addBlue(70)};
+	}
+
+	/**
+	 * Validate that a fused pipeline of point operations gives the same
+	 * Picture as calling the filters one after another, and does not
+	 * modify the original Picture object.
+	 */
+	public void testPipeline()
+	{
+		Picture pic = Picture.loadPicture("Creek.bmp");
+		Picture picCopy = new Picture(pic);
+		Picture picCorrect = pic.grayscale().lighten(20).addBlue(10)
+				.negate().darken(35).addRed(50).addGreen(-15);
+		Picture picTest = pic.pipeline().grayscale().lighten(20).addBlue(10)
+				.negate().darken(35).addRed(50).addGreen(-15).toPicture();
+		assertTrue(pic.equals(picCopy));
+		assertTrue(picCorrect.equals(picTest));
+		assertTrue(pic.equals(pic.pipeline().toPicture()));
+	}
+
 	/**
 	 * Validate that rotate(1) works and does not modify the 
 	 * original Picture object.
@@ -227,6 +797,27 @@ public class PictureTest extends TestCase {
 		assertTrue(true);
 	}
 	
+	/**
+	 * Validate that blur gives the same result as averagePatch on every pixel,
+	 * including thresholds larger than the picture.
+	 */
+	public void testBlurMatchesAveragePatch() {
+		Picture pic = Picture.loadPicture("Colleen.bmp");
+		int[] thresholds = {1, 4, 17, 300};
+		for (int threshold : thresholds) {
+			Picture picTest = pic.blur(threshold);
+			for (int h = 0; h < pic.getHeight(); h += 7) {
+				for (int w = 0; w < pic.getWidth(); w += 3) {
+					Color expected = pic.averagePatch(w, h, threshold);
+					Color actual = picTest.getPixel(w, h).getColor();
+					assertEquals(expected.getRed(), actual.getRed());
+					assertEquals(expected.getGreen(), actual.getGreen());
+					assertEquals(expected.getBlue(), actual.getBlue());
+				}
+			}
+		}
+	}
+
 	/**
 	 * Validate that blur doesn't modify the picture if the threshold given is simply zero.
 	 * 
@@ -238,6 +829,48 @@ public class PictureTest extends TestCase {
 		assertTrue(pic.equals(picCopy));
 		assertTrue(pic.equals(picTest));
 	}
+	/**
+	 * Validate that boxBlur only differs from blur by rounding.
+	 */
+	public void testBoxBlur()
+	{
+		Picture pic = Picture.loadPicture("Colleen.bmp");
+		Picture truncated = pic.blur(4);
+		Picture rounded = pic.boxBlur(4);
+		for (int h = 0; h < pic.getHeight(); h++) {
+			for (int w = 0; w < pic.getWidth(); w++) {
+				Pixel expected = truncated.getPixel(w, h);
+				Pixel actual = rounded.getPixel(w, h);
+				assertTrue(Math.abs(expected.getRed() - actual.getRed()) <= 1);
+				assertTrue(Math.abs(expected.getGreen() - actual.getGreen()) <= 1);
+				assertTrue(Math.abs(expected.getBlue() - actual.getBlue()) <= 1);
+			}
+		}
+	}
+
+	/**
+	 * Validate that the Gaussian blurs keep a solid color, including at the
+	 * edges, and that the box approximation stays close to the real one.
+	 */
+	public void testGaussianBlur()
+	{
+		Picture gray = Picture.loadPicture("Gray.bmp");
+		assertTrue(gray.equals(gray.gaussianBlur(2.5)));
+		assertTrue(gray.equals(gray.fastGaussianBlur(2.5)));
+
+		Picture pic = Picture.loadPicture("Colleen.bmp");
+		Picture exact = pic.gaussianBlur(3);
+		Picture approximate = pic.fastGaussianBlur(3);
+		long difference = 0;
+		for (int h = 0; h < pic.getHeight(); h++) {
+			for (int w = 0; w < pic.getWidth(); w++) {
+				difference += Math.abs(exact.getPixel(w, h).getAverage()
+						- approximate.getPixel(w, h).getAverage());
+			}
+		}
+		assertTrue(difference < 2 * pic.getWidth() * pic.getHeight());
+	}
+
 	/**
 	 * Validate that showEdges works and does not modify the 
 	 * original Picture object.
@@ -429,6 +1062,23 @@ public class PictureTest extends TestCase {
 		assertTrue(!newPic.getPixel(152, 167).getColor().equals(new Color(0, 255, 0)));
 	}
 
+	/**
+	 * Validate that paintBucket finishes and fills the whole region when the
+	 * new color is within the threshold of the selected pixel.
+	 */
+	public void testPaintBucketSimilarColor() {
+		Picture pic = Picture.loadPicture("Gray.bmp");
+		Color newColor = new Color(pic.getPixel(0, 0).getColor().getRed() + 5,
+				pic.getPixel(0, 0).getColor().getGreen(),
+				pic.getPixel(0, 0).getColor().getBlue());
+		Picture newPic = pic.paintBucket(10, 10, 30, newColor);
+		for (int h = 0; h < newPic.getHeight(); h++) {
+			for (int w = 0; w < newPic.getWidth(); w++) {
+				assertEquals(newColor, newPic.getPixel(w, h).getColor());
+			}
+		}
+	}
+
 	/**
 	 * Test run-time of blur with different picture sizes.
 	 */
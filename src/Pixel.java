@@ -21,6 +21,9 @@ public class Pixel
 
 	//////////////////////////////// Fields ///////////////////////////////////
 
+	/** The largest squared distance between two colors, from black to white. */
+	public static final int MAX_DISTANCE_SQUARED = 3 * 255 * 255;
+
 	/** The SimplePicture this Pixel belongs to */
 	private SimplePicture picture;
 
@@ -81,6 +84,17 @@ public class Pixel
 		return alpha;
 	}
 
+	/**
+	 * @param value A color value.
+	 * 
+	 * @return The alpha component of the provided color value.
+	 */
+	public static int getAlpha(int value)
+	{
+		int alpha = extractEightBits(value, 24);
+		return alpha;
+	}
+
 	/**
 	 * @return The amount of red at this Pixel. The value varies
 	 * 	from 0 for none to 255 for maximum.
@@ -213,6 +227,23 @@ public class Pixel
 		return value;
 	}
 
+	/**
+	 * Packs color components into a single color value, with alpha, red,
+	 * 	green, blue each taking 8 bits from left to right. Each component
+	 * 	is first corrected to be within 0 and 255.
+	 * 
+	 * @param alpha The alpha (transparency) component.
+	 * @param red The red component.
+	 * @param green The green component.
+	 * @param blue The blue component.
+	 * 
+	 * @return The packed color value.
+	 */
+	public static int toColorValue(int alpha, int red, int green, int blue) {
+		return (correctValue(alpha) << 24) | (correctValue(red) << 16) |
+		(correctValue(green) << 8) | correctValue(blue);
+	}
+
 	/**
 	 * Sets the red color component to a new red value.
 	 * 
@@ -301,6 +332,60 @@ public class Pixel
 		return distance;
 	}
 
+	/**
+	 * Computes the squared distance between two color values, ignoring
+	 * 	their alpha. This is exact and avoids floating point, so comparing it
+	 * 	against squaredThreshold gives the same answer as comparing the
+	 * 	distance itself against the threshold.
+	 * 
+	 * @param value1 A color value.
+	 * @param value2 A color value.
+	 * 
+	 * @return The square of the distance between the two colors.
+	 */
+	public static int colorDistanceSquared(int value1, int value2) {
+		int redDistance = getRed(value1) - getRed(value2);
+		int greenDistance = getGreen(value1) - getGreen(value2);
+		int blueDistance = getBlue(value1) - getBlue(value2);
+		return redDistance * redDistance + greenDistance * greenDistance
+				+ blueDistance * blueDistance;
+	}
+
+	/**
+	 * A color distance is at most threshold exactly when its square is at
+	 * 	most the value returned.
+	 * 
+	 * @param threshold The largest distance allowed.
+	 * 
+	 * @return The largest squared distance allowed, or -1 if no distance is
+	 * 	allowed.
+	 */
+	public static int squaredThreshold(int threshold) {
+		if (threshold < 0)
+			return -1;
+		if (threshold * (long) threshold >= MAX_DISTANCE_SQUARED)
+			return MAX_DISTANCE_SQUARED;
+		return threshold * threshold;
+	}
+
+	/**
+	 * A color distance, rounded down to an int, is at most threshold
+	 * 	exactly when its square is at most the value returned.
+	 * 
+	 * @param threshold The largest rounded-down distance allowed.
+	 * 
+	 * @return The largest squared distance allowed, or -1 if no distance is
+	 * 	allowed.
+	 */
+	public static int truncatedSquaredThreshold(int threshold) {
+		if (threshold < 0)
+			return -1;
+		// Rounding down gives at most threshold below threshold + 1.
+		if ((threshold + 1L) * (threshold + 1L) > MAX_DISTANCE_SQUARED)
+			return MAX_DISTANCE_SQUARED;
+		return (threshold + 1) * (threshold + 1) - 1;
+	}
+
 	/** 
 	 * @return The average of the red, green, and blue values of this Pixel.
 	 */
@@ -0,0 +1,234 @@
+package src;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A lazy chain of point operations on a Picture. Point operations change
+ * 	each pixel based only on its own color, so a chain such as
+ *
+ * 	picture.pipeline().grayscale().lighten(20).addBlue(10).toPicture()
+ *
+ * 	can be applied in a single pass over the picture that writes straight
+ * 	into one new Picture. This gives the same result as
+ * 	picture.grayscale().lighten(20).addBlue(10), which copies the whole
+ * 	picture and makes a full pass for every call.
+ *
+ * Operations are recorded in the order they are added and nothing is
+ * 	computed until toPicture or applyInPlace is called. Consecutive
+ * 	ChannelLookups, which lighten, darken and the add* operations are,
+ * 	are merged into one as they are added.
+ */
+public class PointPipeline
+{
+
+	/////////////////////////////// Interfaces ////////////////////////////////
+
+	/**
+	 * A function from the color of a pixel to its new color.
+	 */
+	public interface PointOperation
+	{
+		/**
+		 * @param value A color value, with alpha, red, green, blue each
+		 * 	taking 8 bits from left to right.
+		 *
+		 * @return The new color value, in the same format.
+		 */
+		int apply(int value);
+	}
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Converts a pixel to gray; see Picture.grayscale.
+	 */
+	public static final PointOperation GRAYSCALE = new PointOperation() {
+		public int apply(int value) { return gray(value); }
+	};
+
+	/**
+	 * Converts a pixel to its photonegative; see Picture.negate.
+	 */
+	public static final PointOperation NEGATE = new PointOperation() {
+		public int apply(int value) { return negative(value); }
+	};
+
+	/**
+	 * The Picture the operations are applied to.
+	 */
+	private final Picture source;
+
+	/**
+	 * The operations, in the order they are applied.
+	 */
+	private final List<PointOperation> operations =
+			new ArrayList<PointOperation>();
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates an empty pipeline over the Picture provided.
+	 *
+	 * @param source The Picture to apply the operations to.
+	 */
+	public PointPipeline(Picture source) {
+		this.source = source;
+	}
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Adds an operation to the end of this pipeline.
+	 *
+	 * @param operation The operation to add.
+	 *
+	 * @return This pipeline.
+	 */
+	public PointPipeline then(PointOperation operation) {
+		int last = operations.size() - 1;
+		if (operation instanceof ChannelLookup && last >= 0
+				&& operations.get(last) instanceof ChannelLookup) {
+			operations.set(last, ((ChannelLookup) operations.get(last))
+					.then((ChannelLookup) operation));
+		} else {
+			operations.add(operation);
+		}
+		return this;
+	}
+
+	/**
+	 * @return This pipeline, followed by Picture.grayscale().
+	 */
+	public PointPipeline grayscale() { return then(GRAYSCALE); }
+
+	/**
+	 * @return This pipeline, followed by Picture.negate().
+	 */
+	public PointPipeline negate() { return then(NEGATE); }
+
+	/**
+	 * @param amount The amount to lighten by.
+	 *
+	 * @return This pipeline, followed by Picture.lighten(amount).
+	 */
+	public PointPipeline lighten(int amount) {
+		return then(ChannelLookup.lighten(amount));
+	}
+
+	/**
+	 * @param amount The amount to darken by.
+	 *
+	 * @return This pipeline, followed by Picture.darken(amount).
+	 */
+	public PointPipeline darken(int amount) {
+		return then(ChannelLookup.darken(amount));
+	}
+
+	/**
+	 * @param amount The amount of red to add.
+	 *
+	 * @return This pipeline, followed by Picture.addRed(amount).
+	 */
+	public PointPipeline addRed(int amount) {
+		return then(ChannelLookup.add(amount, 0, 0));
+	}
+
+	/**
+	 * @param amount The amount of green to add.
+	 *
+	 * @return This pipeline, followed by Picture.addGreen(amount).
+	 */
+	public PointPipeline addGreen(int amount) {
+		return then(ChannelLookup.add(0, amount, 0));
+	}
+
+	/**
+	 * @param amount The amount of blue to add.
+	 *
+	 * @return This pipeline, followed by Picture.addBlue(amount).
+	 */
+	public PointPipeline addBlue(int amount) {
+		return then(ChannelLookup.add(0, 0, amount));
+	}
+
+	/**
+	 * Applies every operation of this pipeline to the source Picture in a
+	 * 	single pass. The source Picture is not modified.
+	 *
+	 * @return A new Picture holding the result.
+	 */
+	public Picture toPicture() {
+		Picture result = new Picture(source.getWidth(), source.getHeight());
+		applyTo(result);
+		return result;
+	}
+
+	/**
+	 * Applies every operation of this pipeline to the source Picture itself
+	 * 	in a single pass, instead of to a copy. Only one row of pixels is
+	 * 	buffered per thread.
+	 *
+	 * @return The source Picture, which now holds the result.
+	 */
+	public Picture applyInPlace() {
+		applyTo(source);
+		source.pixelsChanged();
+		return source;
+	}
+
+	/**
+	 * Writes the result of the operations into a Picture the size of the
+	 * 	source. Each row is read before it is written, so the Picture may
+	 * 	be the source itself.
+	 *
+	 * @param result The Picture to write to.
+	 */
+	private void applyTo(Picture result) {
+		final int width = source.getWidth();
+		int height = source.getHeight();
+		final int[] target = result.getRaster();
+		final PointOperation[] chain =
+				operations.toArray(new PointOperation[operations.size()]);
+
+		BandExecutor.run(width, height, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				int[] row = new int[width];
+				for (int y = startY; y < endY; y++) {
+					source.getRow(y, row);
+					int offset = y * width;
+					for (int x = 0; x < width; x++) {
+						int value = row[x];
+						for (int i = 0; i < chain.length; i++)
+							value = chain[i].apply(value);
+						target[offset + x] = value;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param value A color value.
+	 *
+	 * @return The color value with red, green and blue all set to their
+	 * 	average.
+	 */
+	static int gray(int value) {
+		int average = (Pixel.getRed(value) + Pixel.getGreen(value)
+				+ Pixel.getBlue(value)) / 3;
+		return Pixel.toColorValue(Pixel.getAlpha(value), average, average,
+				average);
+	}
+
+	/**
+	 * @param value A color value.
+	 *
+	 * @return The photonegative of the color value.
+	 */
+	static int negative(int value) {
+		return Pixel.toColorValue(Pixel.getAlpha(value),
+				255 - Pixel.getRed(value), 255 - Pixel.getGreen(value),
+				255 - Pixel.getBlue(value));
+	}
+
+} // End of PointPipeline class.
@@ -0,0 +1,175 @@
+package src;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the pixel arrays of released pictures so that new pictures of the
+ * 	same size can reuse them instead of allocating fresh multi-megabyte
+ * 	arrays. Pooling is opt-in: a thread that has a current RasterPool
+ * 	gets the rasters of the pictures it creates with
+ * 	new Picture(width, height) or new Picture(picture), which covers the
+ * 	results of the Picture effects, from the pool, and calling release
+ * 	on such a picture gives its raster back. Pictures created by a thread
+ * 	without one, and pictures that are never released, behave as before.
+ *
+ * A pool holds at most a fixed number of bytes of free rasters; arrays
+ * 	given back beyond that are left to the garbage collector. A pool can
+ * 	be shared by several threads.
+ */
+public class RasterPool
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Default number of bytes of free rasters a pool keeps.
+	 */
+	public static final long DEFAULT_MAX_POOLED_BYTES = 256L * 1024 * 1024;
+
+	/**
+	 * The RasterPool of each thread, if any.
+	 */
+	private static final ThreadLocal<RasterPool> current =
+			new ThreadLocal<RasterPool>();
+
+	/**
+	 * The most bytes of free rasters to keep.
+	 */
+	private final long maxPooledBytes;
+
+	/**
+	 * Free rasters, by length.
+	 */
+	private final Map<Integer, ArrayDeque<int[]>> free =
+			new HashMap<Integer, ArrayDeque<int[]>>();
+
+	/**
+	 * Bytes of free rasters kept.
+	 */
+	private long pooledBytes = 0;
+
+	/**
+	 * Number of borrowed rasters that were reused.
+	 */
+	private long reused = 0;
+
+	/**
+	 * Number of borrowed rasters that had to be allocated.
+	 */
+	private long allocated = 0;
+
+	/////////////////////////////// Constructors //////////////////////////////
+
+	/**
+	 * Creates a pool keeping up to DEFAULT_MAX_POOLED_BYTES of free rasters.
+	 */
+	public RasterPool() {
+		this(DEFAULT_MAX_POOLED_BYTES);
+	}
+
+	/**
+	 * @param maxPooledBytes The most bytes of free rasters to keep.
+	 */
+	public RasterPool(long maxPooledBytes) {
+		if (maxPooledBytes < 0)
+			throw new IllegalArgumentException("maxPooledBytes is negative");
+		this.maxPooledBytes = maxPooledBytes;
+	}
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * @return The RasterPool of the calling thread, or null if it has none.
+	 */
+	public static RasterPool current() {
+		return current.get();
+	}
+
+	/**
+	 * Sets the RasterPool of the calling thread.
+	 *
+	 * @param pool The new RasterPool, or null for none.
+	 *
+	 * @return The previous RasterPool of the thread, to put back with
+	 * 	setCurrent when done.
+	 */
+	public static RasterPool setCurrent(RasterPool pool) {
+		RasterPool previous = current.get();
+		if (pool == null)
+			current.remove();
+		else
+			current.set(pool);
+		return previous;
+	}
+
+	/**
+	 * Takes a raster from the pool, or allocates one if there is none of
+	 * 	that length. Either way it is all zeros, like a new array, so
+	 * 	pictures made from it start out black.
+	 *
+	 * @param length The number of pixels.
+	 *
+	 * @return An array of exactly that length.
+	 */
+	public int[] borrow(int length) {
+		int[] raster = null;
+		synchronized (this) {
+			ArrayDeque<int[]> rasters = free.get(length);
+			if (rasters != null && !rasters.isEmpty()) {
+				reused++;
+				pooledBytes -= 4L * length;
+				raster = rasters.pop();
+			} else {
+				allocated++;
+			}
+		}
+		if (raster == null)
+			return new int[length];
+		Arrays.fill(raster, 0);
+		return raster;
+	}
+
+	/**
+	 * Gives a raster back to the pool. It must not be used afterwards.
+	 *
+	 * @param raster The raster, as returned by borrow.
+	 */
+	public synchronized void giveBack(int[] raster) {
+		long bytes = 4L * raster.length;
+		if (pooledBytes + bytes > maxPooledBytes)
+			return;
+		ArrayDeque<int[]> rasters = free.get(raster.length);
+		if (rasters == null) {
+			rasters = new ArrayDeque<int[]>();
+			free.put(raster.length, rasters);
+		}
+		rasters.push(raster);
+		pooledBytes += bytes;
+	}
+
+	/**
+	 * Drops every free raster.
+	 */
+	public synchronized void clear() {
+		free.clear();
+		pooledBytes = 0;
+	}
+
+	/**
+	 * @return The number of bytes of free rasters in the pool.
+	 */
+	public synchronized long getPooledBytes() { return pooledBytes; }
+
+	/**
+	 * @return The number of borrowed rasters that were reused.
+	 */
+	public synchronized long getReused() { return reused; }
+
+	/**
+	 * @return The number of borrowed rasters that had to be allocated.
+	 */
+	public synchronized long getAllocated() { return allocated; }
+
+} // End of RasterPool class.
@@ -0,0 +1,510 @@
+package src;
+import java.util.Arrays;
+
+/**
+ * Separable blur kernels: a box blur, a true Gaussian blur and a Gaussian
+ * 	approximated by repeated box blurs. Each kernel is applied as a
+ * 	horizontal pass followed by a vertical pass over separate red, green
+ * 	and blue channel arrays, which costs O(radius) per pixel for the
+ * 	Gaussian and O(1) per pixel for the box instead of O(radius^2).
+ *
+ * As in Picture.blur, pixels outside the picture are ignored: near the
+ * 	edges the kernel weights that fall inside the picture are scaled up
+ * 	to sum to one. Results are rounded to the nearest integer.
+ *
+ * boxInPlace and gaussianInPlace give the same results without the
+ * 	picture-sized channel arrays. They go down the picture a row at a
+ * 	time, keeping the horizontal pass of only the rows the vertical pass
+ * 	still needs in a rolling buffer of (2 * radius) + 1 rows. The rows
+ * 	below the one being written have not been overwritten yet, so they
+ * 	can still be read from the picture. They do the same arithmetic in
+ * 	the same order as box and gaussian, one row at a time instead of in
+ * 	parallel bands.
+ */
+public class SeparableBlur
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Number of box passes used by approximateGaussian.
+	 */
+	public static final int DEFAULT_BOX_PASSES = 3;
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Box-blurs a packed pixel array: every pixel becomes the average of
+	 * 	the square of side (2 * radius) + 1 centered on it.
+	 *
+	 * @param source The pixels to blur, in row-major order.
+	 * @param target The array to write the blurred pixels to.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param radius Half the side of the square, not counting the center.
+	 */
+	public static void box(int[] source, int[] target, int width, int height,
+			int radius) {
+		float[][] channels = split(source, width * height);
+		float[] scratch = new float[width * height];
+		for (float[] channel : channels)
+			boxPasses(channel, scratch, width, height, radius);
+		merge(channels, target);
+	}
+
+	/**
+	 * Gaussian-blurs a packed pixel array. The kernel is cut off at three
+	 * 	standard deviations.
+	 *
+	 * @param source The pixels to blur, in row-major order.
+	 * @param target The array to write the blurred pixels to.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param sigma The standard deviation of the Gaussian, in pixels.
+	 */
+	public static void gaussian(int[] source, int[] target, int width,
+			int height, double sigma) {
+		int radius = (int) Math.ceil(3 * sigma);
+		if (sigma <= 0 || radius == 0) {
+			System.arraycopy(source, 0, target, 0, width * height);
+			return;
+		}
+		float[] kernel = gaussianKernel(sigma, radius);
+		double[] cumulative = cumulativeWeights(kernel);
+
+		float[][] channels = split(source, width * height);
+		float[] scratch = new float[width * height];
+		for (float[] channel : channels) {
+			convolveHorizontal(channel, scratch, width, height, kernel,
+					cumulative);
+			convolveVertical(scratch, channel, width, height, kernel,
+					cumulative);
+		}
+		merge(channels, target);
+	}
+
+	/**
+	 * Box-blurs a packed pixel array in place, with the same result as
+	 * 	box. Besides a few rows, it needs room for the horizontal pass of
+	 * 	(2 * radius) + 1 rows of the picture.
+	 *
+	 * @param pixels The pixels to blur, in row-major order. They are
+	 * 	replaced by the blurred pixels.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param radius Half the side of the square, not counting the center.
+	 */
+	public static void boxInPlace(int[] pixels, int width, int height,
+			int radius) {
+		radius = Math.max(radius, 0);
+		RowWindow window = new RowWindow(pixels, width, height, radius);
+		double[][] sums = new double[3][width];
+		for (int y = 0; y < height; y++) {
+			FilterProgress.checkpoint(y, height);
+			// Slide the box down: the top row leaves, new rows enter.
+			if (y - radius - 1 >= 0) {
+				for (int c = 0; c < 3; c++)
+					addRow(window.ring[c], sums[c],
+							window.offset(y - radius - 1), width, -1);
+			}
+			int first = y == 0 ? 0 : y + radius;
+			for (int i = first; i <= y + radius && i < height; i++) {
+				window.filter(i, null, null);
+				for (int c = 0; c < 3; c++)
+					addRow(window.ring[c], sums[c], window.offset(i), width, 1);
+			}
+
+			int count = Math.min(height - 1, y + radius)
+					- Math.max(0, y - radius) + 1;
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				pixels[offset + x] = Pixel.toColorValue(255,
+						Math.round((float) (sums[0][x] / count)),
+						Math.round((float) (sums[1][x] / count)),
+						Math.round((float) (sums[2][x] / count)));
+			}
+		}
+	}
+
+	/**
+	 * Gaussian-blurs a packed pixel array in place, with the same result as
+	 * 	gaussian. Besides a few rows, it needs room for the horizontal pass
+	 * 	of (2 * radius) + 1 rows of the picture, where radius is three
+	 * 	standard deviations.
+	 *
+	 * @param pixels The pixels to blur, in row-major order. They are
+	 * 	replaced by the blurred pixels.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param sigma The standard deviation of the Gaussian, in pixels.
+	 */
+	public static void gaussianInPlace(int[] pixels, int width, int height,
+			double sigma) {
+		int radius = (int) Math.ceil(3 * sigma);
+		if (sigma <= 0 || radius == 0)
+			return;
+		float[] kernel = gaussianKernel(sigma, radius);
+		double[] cumulative = cumulativeWeights(kernel);
+
+		RowWindow window = new RowWindow(pixels, width, height, radius);
+		double[] sums = new double[width];
+		float[][] blurred = new float[3][width];
+		for (int y = 0; y < height; y++) {
+			FilterProgress.checkpoint(y, height);
+			int first = y == 0 ? 0 : y + radius;
+			for (int i = first; i <= y + radius && i < height; i++)
+				window.filter(i, kernel, cumulative);
+
+			int low = Math.max(-radius, -y);
+			int high = Math.min(radius, height - 1 - y);
+			double norm = cumulative[high + radius + 1]
+					- cumulative[low + radius];
+			for (int c = 0; c < 3; c++) {
+				float[] in = window.ring[c];
+				Arrays.fill(sums, 0);
+				for (int k = low; k <= high; k++) {
+					float weight = kernel[k + radius];
+					int offset = window.offset(y + k);
+					for (int x = 0; x < width; x++)
+						sums[x] += weight * in[offset + x];
+				}
+				for (int x = 0; x < width; x++)
+					blurred[c][x] = (float) (sums[x] / norm);
+			}
+
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				pixels[offset + x] = Pixel.toColorValue(255,
+						Math.round(blurred[0][x]), Math.round(blurred[1][x]),
+						Math.round(blurred[2][x]));
+			}
+		}
+	}
+
+	/**
+	 * @param sigma The standard deviation of the Gaussian.
+	 * @param radius How far the kernel reaches from its center.
+	 *
+	 * @return The unnormalized weights of the Gaussian from -radius to
+	 * 	radius.
+	 */
+	private static float[] gaussianKernel(double sigma, int radius) {
+		float[] kernel = new float[2 * radius + 1];
+		for (int k = -radius; k <= radius; k++)
+			kernel[k + radius] = (float) Math.exp(-k * k / (2 * sigma * sigma));
+		return kernel;
+	}
+
+	/**
+	 * @param kernel A kernel.
+	 *
+	 * @return The sums of the kernel's first i weights, for i from 0 to
+	 * 	its length, used to renormalize near the edges.
+	 */
+	private static double[] cumulativeWeights(float[] kernel) {
+		double[] cumulative = new double[kernel.length + 1];
+		for (int i = 0; i < kernel.length; i++)
+			cumulative[i + 1] = cumulative[i] + kernel[i];
+		return cumulative;
+	}
+
+	/**
+	 * Approximates a Gaussian blur with several box blurs whose sizes are
+	 * 	chosen so that their combined variance matches sigma. This costs
+	 * 	O(1) per pixel and pass, whatever sigma is.
+	 *
+	 * @param source The pixels to blur, in row-major order.
+	 * @param target The array to write the blurred pixels to.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param sigma The standard deviation of the Gaussian, in pixels.
+	 * @param passes The number of box blurs to apply.
+	 */
+	public static void approximateGaussian(int[] source, int[] target,
+			int width, int height, double sigma, int passes) {
+		if (passes < 1)
+			throw new IllegalArgumentException("passes must be positive");
+		int[] radii = boxRadii(sigma, passes);
+		float[][] channels = split(source, width * height);
+		float[] scratch = new float[width * height];
+		for (float[] channel : channels) {
+			for (int radius : radii)
+				boxPasses(channel, scratch, width, height, radius);
+		}
+		merge(channels, target);
+	}
+
+	/**
+	 * Chooses the radii of the box blurs approximating a Gaussian: each box
+	 * 	has an odd side of either wl or wl + 2, where wl is the largest odd
+	 * 	side not exceeding the ideal one, and just enough of them use the
+	 * 	larger side to make the variances add up to sigma^2.
+	 *
+	 * @param sigma The standard deviation of the Gaussian.
+	 * @param passes The number of boxes.
+	 *
+	 * @return The radius of each box.
+	 */
+	static int[] boxRadii(double sigma, int passes) {
+		int[] radii = new int[passes];
+		if (sigma <= 0)
+			return radii;
+		double variance = sigma * sigma;
+		int lower = (int) Math.floor(Math.sqrt(12 * variance / passes + 1));
+		if (lower % 2 == 0)
+			lower--;
+		int upper = lower + 2;
+		long lowerCount = Math.round((12 * variance - passes * lower * lower
+				- 4 * passes * lower - 3 * passes) / (-4.0 * lower - 4));
+		for (int i = 0; i < passes; i++)
+			radii[i] = ((i < lowerCount ? lower : upper) - 1) / 2;
+		return radii;
+	}
+
+	/**
+	 * Applies a horizontal and then a vertical box pass to a channel in
+	 * 	place.
+	 *
+	 * @param channel The channel to blur.
+	 * @param scratch A channel-sized array to use between passes.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param radius The radius of the box.
+	 */
+	private static void boxPasses(float[] channel, float[] scratch, int width,
+			int height, int radius) {
+		if (radius <= 0)
+			return;
+		boxHorizontal(channel, scratch, width, height, radius);
+		boxVertical(scratch, channel, width, height, radius);
+	}
+
+	/**
+	 * Averages each pixel with the pixels within radius of it on its row,
+	 * 	using a running sum.
+	 */
+	private static void boxHorizontal(final float[] in, final float[] out,
+			final int width, int height, final int radius) {
+		BandExecutor.run(width, height, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				for (int y = startY; y < endY; y++)
+					boxRow(in, out, y * width, y * width, width, radius);
+			}
+		});
+	}
+
+	/**
+	 * Averages each pixel of one row with the pixels within radius of it.
+	 */
+	private static void boxRow(float[] in, float[] out, int inOffset,
+			int outOffset, int width, int radius) {
+		double sum = 0;
+		for (int x = 0; x <= radius && x < width; x++)
+			sum += in[inOffset + x];
+		for (int x = 0; x < width; x++) {
+			int count = Math.min(width - 1, x + radius)
+					- Math.max(0, x - radius) + 1;
+			out[outOffset + x] = (float) (sum / count);
+			if (x + radius + 1 < width)
+				sum += in[inOffset + x + radius + 1];
+			if (x - radius >= 0)
+				sum -= in[inOffset + x - radius];
+		}
+	}
+
+	/**
+	 * Averages each pixel with the pixels within radius of it in its
+	 * 	column, using running sums kept for a whole row at a time so that
+	 * 	memory is read in row order.
+	 */
+	private static void boxVertical(final float[] in, final float[] out,
+			final int width, final int height, final int radius) {
+		BandExecutor.run(width, height, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				double[] sums = new double[width];
+				int first = Math.max(0, startY - radius);
+				int last = Math.min(height - 1, startY + radius);
+				for (int y = first; y <= last; y++)
+					addRow(in, sums, y * width, width, 1);
+				for (int y = startY; y < endY; y++) {
+					int count = Math.min(height - 1, y + radius)
+							- Math.max(0, y - radius) + 1;
+					int offset = y * width;
+					for (int x = 0; x < width; x++)
+						out[offset + x] = (float) (sums[x] / count);
+					if (y + radius + 1 < height)
+						addRow(in, sums, (y + radius + 1) * width, width, 1);
+					if (y - radius >= 0)
+						addRow(in, sums, (y - radius) * width, width, -1);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Adds (or subtracts) one row of a channel to running column sums.
+	 */
+	private static void addRow(float[] in, double[] sums, int offset,
+			int width, int sign) {
+		for (int x = 0; x < width; x++)
+			sums[x] += sign * in[offset + x];
+	}
+
+	/**
+	 * Convolves each row of a channel with a kernel.
+	 */
+	private static void convolveHorizontal(final float[] in, final float[] out,
+			final int width, int height, final float[] kernel,
+			final double[] cumulative) {
+		BandExecutor.run(width, height, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				for (int y = startY; y < endY; y++) {
+					convolveRow(in, out, y * width, y * width, width, kernel,
+							cumulative);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Convolves one row of a channel with a kernel.
+	 */
+	private static void convolveRow(float[] in, float[] out, int inOffset,
+			int outOffset, int width, float[] kernel, double[] cumulative) {
+		int radius = kernel.length / 2;
+		for (int x = 0; x < width; x++) {
+			int low = Math.max(-radius, -x);
+			int high = Math.min(radius, width - 1 - x);
+			double sum = 0;
+			for (int k = low; k <= high; k++)
+				sum += kernel[k + radius] * in[inOffset + x + k];
+			out[outOffset + x] = (float) (sum / (cumulative[high
+					+ radius + 1] - cumulative[low + radius]));
+		}
+	}
+
+	/**
+	 * Convolves each column of a channel with a kernel, accumulating a whole
+	 * 	output row at a time so that memory is read in row order.
+	 */
+	private static void convolveVertical(final float[] in, final float[] out,
+			final int width, final int height, final float[] kernel,
+			final double[] cumulative) {
+		final int radius = kernel.length / 2;
+		BandExecutor.run(width, height, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				double[] sums = new double[width];
+				for (int y = startY; y < endY; y++) {
+					int low = Math.max(-radius, -y);
+					int high = Math.min(radius, height - 1 - y);
+					Arrays.fill(sums, 0);
+					for (int k = low; k <= high; k++) {
+						float weight = kernel[k + radius];
+						int offset = (y + k) * width;
+						for (int x = 0; x < width; x++)
+							sums[x] += weight * in[offset + x];
+					}
+					double norm = cumulative[high + radius + 1]
+							- cumulative[low + radius];
+					int offset = y * width;
+					for (int x = 0; x < width; x++)
+						out[offset + x] = (float) (sums[x] / norm);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Splits packed pixels into red, green and blue channel arrays.
+	 */
+	private static float[][] split(int[] source, int size) {
+		float[][] channels = new float[3][size];
+		for (int i = 0; i < size; i++) {
+			int value = source[i];
+			channels[0][i] = Pixel.getRed(value);
+			channels[1][i] = Pixel.getGreen(value);
+			channels[2][i] = Pixel.getBlue(value);
+		}
+		return channels;
+	}
+
+	////////////////////////////// Inner Classes //////////////////////////////
+
+	/**
+	 * The horizontal pass of the rows around the one an in-place blur is
+	 * 	writing, kept in a rolling buffer for each channel.
+	 */
+	private static class RowWindow
+	{
+		private final int[] pixels;
+		private final int width;
+		private final int rows;
+		private final int radius;
+
+		/**
+		 * The horizontal pass of each channel; row y is kept at offset(y).
+		 */
+		final float[][] ring;
+
+		/**
+		 * One row of each channel, before the horizontal pass.
+		 */
+		private final float[][] row;
+
+		RowWindow(int[] pixels, int width, int height, int radius) {
+			this.pixels = pixels;
+			this.width = width;
+			this.radius = radius;
+			rows = Math.max(Math.min(2 * radius + 1, height), 1);
+			ring = new float[3][rows * width];
+			row = new float[3][width];
+		}
+
+		/**
+		 * @return The offset of row y in the rolling buffer.
+		 */
+		int offset(int y) {
+			return (y % rows) * width;
+		}
+
+		/**
+		 * Runs the horizontal pass over row y of the picture, which must
+		 * 	not have been overwritten yet, into the rolling buffer.
+		 *
+		 * @param y The row.
+		 * @param kernel The Gaussian kernel, or null for a box.
+		 * @param cumulative The kernel's cumulative weights, or null.
+		 */
+		void filter(int y, float[] kernel, double[] cumulative) {
+			int start = y * width;
+			for (int x = 0; x < width; x++) {
+				int value = pixels[start + x];
+				row[0][x] = Pixel.getRed(value);
+				row[1][x] = Pixel.getGreen(value);
+				row[2][x] = Pixel.getBlue(value);
+			}
+			for (int c = 0; c < 3; c++) {
+				if (kernel == null && radius > 0)
+					boxRow(row[c], ring[c], 0, offset(y), width, radius);
+				else if (kernel == null)
+					System.arraycopy(row[c], 0, ring[c], offset(y), width);
+				else
+					convolveRow(row[c], ring[c], 0, offset(y), width, kernel,
+							cumulative);
+			}
+		}
+	}
+
+	/**
+	 * Rounds red, green and blue channel arrays back into opaque packed
+	 * 	pixels.
+	 */
+	private static void merge(float[][] channels, int[] target) {
+		for (int i = 0; i < channels[0].length; i++) {
+			target[i] = Pixel.toColorValue(255,
+					Math.round(channels[0][i]), Math.round(channels[1][i]),
+					Math.round(channels[2][i]));
+		}
+	}
+
+} // End of SeparableBlur class.
@@ -4,7 +4,12 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.geom.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * A class that represents a simple picture. A simple picture may have an
@@ -23,6 +28,22 @@ import java.io.*;
 public class SimplePicture
 {
 
+	/////////////////////////////// Interfaces ////////////////////////////////
+
+	/**
+	 * Something done to each pixel visited by forEachPixel.
+	 */
+	public interface PixelVisitor
+	{
+		/**
+		 * @param x The x-coordinate of the pixel.
+		 * @param y The y-coordinate of the pixel.
+		 * @param value The color value of the pixel, as returned by
+		 * 	getBasicPixel.
+		 */
+		void visit(int x, int y, int value);
+	}
+
 	///////////////////////////////// Fields ///////////////////////////////////
 
 	/**
@@ -45,6 +66,25 @@ public class SimplePicture
 	 */
 	private BufferedImage bufferedImage;
 
+	/**
+	 * Pixels of the BufferedImage, one packed int per pixel in row-major
+	 * 	order. This is the array behind the image's DataBufferInt, so
+	 * 	writing to it changes the image directly.
+	 */
+	private int[] raster;
+
+	/**
+	 * Mask combined with every value read from the raster. Images without
+	 * 	an alpha channel leave the top 8 bits of the raster undefined, so
+	 * 	for them the mask sets the alpha to 255, as getRGB would.
+	 */
+	private int alphaMask;
+
+	/**
+	 * The RasterPool the raster was borrowed from, or null if it was not.
+	 */
+	private RasterPool pool;
+
 	/**
 	 * PictureFrame used to display the SimplePicture.
 	 */
@@ -55,6 +95,21 @@ public class SimplePicture
 	 */
 	private String extension;
 
+	/**
+	 * Reduced copies of this SimplePicture built so far by getMipLevel,
+	 * 	with level n at index n - 1 and null for levels not yet built; or
+	 * 	null if none have been built since the pixels last changed.
+	 */
+	private volatile SimplePicture[] mipLevels;
+
+	/**
+	 * The smallest rectangle holding every pixel known to have changed
+	 * 	since takeChangedRegion was last called, or null if there are none.
+	 * 	It is replaced rather than modified, so it can be read without
+	 * 	locking.
+	 */
+	private volatile Rectangle changedRegion;
+
 	/////////////////////////////// Constructors //////////////////////////////
 
 	/**
@@ -89,8 +144,9 @@ public class SimplePicture
 	 * @param height The desired height.
 	 */
 	public SimplePicture(int width, int height) {
-		bufferedImage = new BufferedImage(width, height,
-				BufferedImage.TYPE_INT_RGB);
+		RasterPool rasterPool = RasterPool.current();
+		setBufferedImage(createImage(width, height, rasterPool));
+		pool = rasterPool;
 		title = "No current picture" + projectName;
 		fileName = "None";
 		extension = "jpg";
@@ -128,12 +184,27 @@ public class SimplePicture
 
 		if (copyPicture.bufferedImage != null)
 		{
-			this.bufferedImage = new BufferedImage(copyPicture.getWidth(),
-					copyPicture.getHeight(), BufferedImage.TYPE_INT_RGB);
+			RasterPool rasterPool = RasterPool.current();
+			this.setBufferedImage(createImage(copyPicture.getWidth(),
+					copyPicture.getHeight(), rasterPool));
+			this.pool = rasterPool;
 			this.copyPicture(copyPicture);
+
+			// A copy starts out with no changes of its own.
+			this.changedRegion = null;
 		}
 	}
 
+	/**
+	 * A constructor that wraps an image already in the packed format
+	 * 	this class uses, without copying it.
+	 * 
+	 * @param image A TYPE_INT_RGB or TYPE_INT_ARGB image.
+	 */
+	private SimplePicture(BufferedImage image) {
+		setBufferedImage(image);
+	}
+
 	//////////////////////////////// Methods //////////////////////////////////
 
 	/**
@@ -143,27 +214,58 @@ public class SimplePicture
 
 	/**
 	 * Copies all of the source SimplePicture provided into the
-	 * 	current SimplePicture object.
+	 * 	current SimplePicture object. If the two pictures differ in
+	 * 	size, only the top left part they have in common is copied.
+	 * 	The alpha of this SimplePicture is kept.
 	 *  
 	 * @param sourcePicture The SimplePicture object to copy.
 	 */
 	public void copyPicture(SimplePicture sourcePicture) {
-		Pixel sourcePixel = null;
-		Pixel targetPixel = null;
-
-		// Loop through the columns
-		for (int sourceX = 0, targetX = 0; 
-		sourceX < sourcePicture.getWidth() && targetX < this.getWidth();
-		sourceX++, targetX++) {
-			// Loop through the rows
-			for (int sourceY = 0, targetY = 0; 
-			sourceY < sourcePicture.getHeight() && 
-			targetY < this.getHeight();
-			sourceY++, targetY++)
+		pixelsChanged(0, 0, sourcePicture.getWidth(), sourcePicture.getHeight());
+
+		// Copy whole rows between rasters when the pixel formats match.
+		if (sourcePicture.bufferedImage.getType() == bufferedImage.getType())
+		{
+			copyRows(sourcePicture);
+			return;
+		}
+
+		sourcePicture.forEachPixel(0, 0, this.getWidth(), this.getHeight(),
+				new PixelVisitor() {
+			public void visit(int x, int y, int value) {
+				setColorValue(x, y, value);
+			}
+		});
+	}
+
+	/**
+	 * Copies the rows of a SimplePicture with the same image type into
+	 * 	this one, clipped to the smaller of the two pictures.
+	 * 
+	 * @param sourcePicture The SimplePicture object to copy.
+	 */
+	private void copyRows(SimplePicture sourcePicture) {
+		int sourceWidth = sourcePicture.getWidth();
+		int targetWidth = this.getWidth();
+		int width = Math.min(sourceWidth, targetWidth);
+		int height = Math.min(sourcePicture.getHeight(), this.getHeight());
+		int[] source = sourcePicture.raster;
+
+		for (int y = 0; y < height; y++)
+		{
+			int sourceIndex = y * sourceWidth;
+			int targetIndex = y * targetWidth;
+			if (alphaMask != 0)
+			{
+				// No alpha channel, so the rows can be copied as they are.
+				System.arraycopy(source, sourceIndex, raster, targetIndex,
+						width);
+			}
+			else
 			{
-				sourcePixel = sourcePicture.getPixel(sourceX, sourceY);
-				targetPixel = this.getPixel(targetX, targetY);
-				targetPixel.setColor(sourcePixel.getColor());
+				for (int x = 0; x < width; x++, sourceIndex++, targetIndex++)
+					raster[targetIndex] = (raster[targetIndex] & 0xff000000)
+							| (source[sourceIndex] & 0xffffff);
 			}
 		}
 	}
@@ -174,15 +276,32 @@ public class SimplePicture
 	 * @param color The Color to set to.
 	 */
 	public void setAllPixelsToAColor(Color color) {
-		// Loop through all x.
-		for (int x = 0; x < this.getWidth(); x++)
+		pixelsChanged();
+		final int rgb = color.getRGB() & 0xffffff;
+		if (alphaMask != 0)
 		{
-			// Loop through all y.
-			for (int y = 0; y < this.getHeight(); y++)
-			{
-				getPixel(x, y).setColor(color);
-			}
+			// No alpha channel to keep, so fill the raster directly.
+			Arrays.fill(raster, rgb);
+			return;
 		}
+		forEachPixel(new PixelVisitor() {
+			public void visit(int x, int y, int value) {
+				setColorValue(x, y, rgb);
+			}
+		});
+	}
+
+	/**
+	 * Sets the red, green and blue of a pixel, keeping its alpha, as
+	 * 	Pixel.setColor does.
+	 * 
+	 * @param x The x-coordinate of the pixel.
+	 * @param y The y-coordinate of the pixel.
+	 * @param value The color value to take red, green and blue from.
+	 */
+	private void setColorValue(int x, int y, int value) {
+		int index = index(x, y);
+		raster[index] = (raster[index] & 0xff000000) | (value & 0xffffff);
 	}
 
 	/**
@@ -192,6 +311,408 @@ public class SimplePicture
 		return bufferedImage;
 	}
 
+	/**
+	 * Replaces the BufferedImage of this SimplePicture and picks up
+	 * 	its raster.
+	 * 
+	 * @param image An image with a packed int raster, as returned by
+	 * 	toPackedImage.
+	 */
+	private void setBufferedImage(BufferedImage image) {
+		release();
+		mipLevels = null;
+		changedRegion = new Rectangle(image.getWidth(), image.getHeight());
+		bufferedImage = image;
+		raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		alphaMask = image.getColorModel().hasAlpha() ? 0 : 0xff000000;
+	}
+
+	/**
+	 * Creates a TYPE_INT_RGB image, using a raster from a pool if one is
+	 * 	given. Either way, the image starts out black.
+	 * 
+	 * @param width The width of the image.
+	 * @param height The height of the image.
+	 * @param rasterPool The pool to borrow the raster from, or null.
+	 * 
+	 * @return The image.
+	 */
+	private static BufferedImage createImage(int width, int height,
+			RasterPool rasterPool) {
+		if (rasterPool == null || width <= 0 || height <= 0)
+			return new BufferedImage(width, height,
+					BufferedImage.TYPE_INT_RGB);
+
+		int[] masks = {0xff0000, 0xff00, 0xff};
+		int[] data = rasterPool.borrow(width * height);
+		return new BufferedImage(new DirectColorModel(24, masks[0],
+				masks[1], masks[2]), Raster.createPackedRaster(
+				new DataBufferInt(data, data.length), width, height, width,
+				masks, null), false, null);
+	}
+
+	/**
+	 * Gives the raster of this SimplePicture back to the RasterPool it was
+	 * 	borrowed from, so that a picture of the same size created later
+	 * 	can reuse it. Does nothing if the raster was not borrowed from a
+	 * 	pool. A SimplePicture whose raster was given back must not be used
+	 * 	again.
+	 */
+	public void release() {
+		if (pool == null)
+			return;
+		RasterPool rasterPool = pool;
+		int[] pooledRaster = raster;
+		pool = null;
+		bufferedImage = null;
+		raster = null;
+		mipLevels = null;
+		rasterPool.giveBack(pooledRaster);
+	}
+
+	/**
+	 * Converts an image into one whose pixels are stored one packed int
+	 * 	per pixel, row after row, with no padding. Images already stored
+	 * 	that way are returned as they are.
+	 * 
+	 * @param image The image to convert.
+	 * 
+	 * @return A TYPE_INT_RGB or TYPE_INT_ARGB image with the same pixels.
+	 */
+	private static BufferedImage toPackedImage(BufferedImage image) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int type = image.getType();
+		if ((type == BufferedImage.TYPE_INT_RGB
+				|| type == BufferedImage.TYPE_INT_ARGB)
+				&& image.getRaster().getParent() == null
+				&& image.getRaster().getDataBuffer().getOffset() == 0
+				&& ((SinglePixelPackedSampleModel) image.getSampleModel())
+						.getScanlineStride() == width)
+			return image;
+
+		BufferedImage result = new BufferedImage(width, height,
+				image.getColorModel().hasAlpha() ?
+						BufferedImage.TYPE_INT_ARGB :
+						BufferedImage.TYPE_INT_RGB);
+
+		// Copy a row at a time to avoid a second full-size buffer.
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++)
+		{
+			image.getRGB(0, y, width, 1, row, 0, width);
+			result.setRGB(0, y, width, 1, row, 0, width);
+		}
+		return result;
+	}
+
+	/**
+	 * Gives direct access to the pixels of this SimplePicture, one packed
+	 * 	int per pixel, with the pixel at (x, y) at index y * getWidth() + x.
+	 * 	Changes to the array change the picture. For pictures without an
+	 * 	alpha channel, the top 8 bits of each value are undefined when read
+	 * 	and ignored when written; use getRow or getRegion to read values
+	 * 	with the alpha filled in.
+	 * 
+	 * @return The array holding the pixels of this SimplePicture.
+	 */
+	public int[] getRaster() {
+		return raster;
+	}
+
+	/**
+	 * Copies one row of pixels out of this SimplePicture.
+	 * 
+	 * @param y The y-coordinate of the row.
+	 * @param row The array to copy into, or null to allocate one.
+	 * 
+	 * @return The array holding the row, as values like getBasicPixel's.
+	 */
+	public int[] getRow(int y, int[] row) {
+		return getRegion(0, y, getWidth(), 1, row);
+	}
+
+	/**
+	 * Sets one row of pixels of this SimplePicture.
+	 * 
+	 * @param y The y-coordinate of the row.
+	 * @param row The new values of the row, as for setBasicPixel.
+	 */
+	public void setRow(int y, int[] row) {
+		setRegion(0, y, getWidth(), 1, row);
+	}
+
+	/**
+	 * Copies a rectangle of pixels out of this SimplePicture.
+	 * 
+	 * @param x The x-coordinate of the top left corner of the rectangle.
+	 * @param y The y-coordinate of the top left corner of the rectangle.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @param region The array to copy into in row-major order, or null
+	 * 	to allocate one.
+	 * 
+	 * @return The array holding the rectangle, as values like
+	 * 	getBasicPixel's.
+	 */
+	public int[] getRegion(int x, int y, int width, int height,
+			int[] region) {
+		checkRegion(x, y, width, height);
+		if (region == null || region.length < width * height)
+			region = new int[width * height];
+
+		int pictureWidth = getWidth();
+		for (int row = 0; row < height; row++)
+		{
+			System.arraycopy(raster, (y + row) * pictureWidth + x,
+					region, row * width, width);
+		}
+		if (alphaMask != 0)
+		{
+			for (int i = 0; i < width * height; i++)
+				region[i] |= alphaMask;
+		}
+		return region;
+	}
+
+	/**
+	 * Sets a rectangle of pixels of this SimplePicture.
+	 * 
+	 * @param x The x-coordinate of the top left corner of the rectangle.
+	 * @param y The y-coordinate of the top left corner of the rectangle.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @param region The new values of the rectangle in row-major order,
+	 * 	as for setBasicPixel.
+	 */
+	public void setRegion(int x, int y, int width, int height,
+			int[] region) {
+		checkRegion(x, y, width, height);
+		pixelsChanged(x, y, width, height);
+		int pictureWidth = getWidth();
+		for (int row = 0; row < height; row++)
+		{
+			System.arraycopy(region, row * width,
+					raster, (y + row) * pictureWidth + x, width);
+		}
+	}
+
+	/**
+	 * Visits every pixel of this SimplePicture in the order they are
+	 * 	stored: row by row from the top, and from left to right within
+	 * 	each row.
+	 * 
+	 * @param visitor What to do with each pixel.
+	 */
+	public void forEachPixel(PixelVisitor visitor) {
+		forEachPixel(0, 0, getWidth(), getHeight(), visitor);
+	}
+
+	/**
+	 * Visits every pixel in a rectangle of this SimplePicture, in the
+	 * 	order they are stored. Parts of the rectangle outside the picture
+	 * 	are skipped.
+	 * 
+	 * @param x The x-coordinate of the top left corner of the rectangle.
+	 * @param y The y-coordinate of the top left corner of the rectangle.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @param visitor What to do with each pixel.
+	 */
+	public void forEachPixel(int x, int y, int width, int height,
+			PixelVisitor visitor) {
+		int startX = Math.max(x, 0);
+		int startY = Math.max(y, 0);
+		int endX = Math.min(x + width, getWidth());
+		int endY = Math.min(y + height, getHeight());
+		int pictureWidth = getWidth();
+		for (int row = startY; row < endY; row++)
+		{
+			int offset = row * pictureWidth;
+			for (int column = startX; column < endX; column++)
+				visitor.visit(column, row, raster[offset + column] | alphaMask);
+		}
+	}
+
+	/**
+	 * Checks that a rectangle lies within this SimplePicture.
+	 * 
+	 * @param x The x-coordinate of the top left corner of the rectangle.
+	 * @param y The y-coordinate of the top left corner of the rectangle.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 */
+	private void checkRegion(int x, int y, int width, int height) {
+		if (x < 0 || y < 0 || width < 0 || height < 0
+				|| x + width > getWidth() || y + height > getHeight())
+			throw new ArrayIndexOutOfBoundsException(
+					"Region out of bounds!");
+	}
+
+	/**
+	 * Tells this SimplePicture that all of its pixels may have changed, so
+	 * 	that the reduced copies returned by getMipLevel are built again
+	 * 	from the new pixels and displays redraw the whole picture. The
+	 * 	methods of this class that change pixels call it themselves; code
+	 * 	that changes pixels through getRaster, getGraphics or createGraphics
+	 * 	must call it, or pixelsChanged(x, y, width, height), when done.
+	 */
+	public void pixelsChanged() {
+		pixelsChanged(0, 0, getWidth(), getHeight());
+	}
+
+	/**
+	 * Tells this SimplePicture that the pixels in a rectangle may have
+	 * 	changed. The rectangle is added to the region returned by
+	 * 	takeChangedRegion, and the reduced copies returned by getMipLevel
+	 * 	are built again. Parts of the rectangle outside the picture are
+	 * 	ignored.
+	 * 
+	 * @param x The x-coordinate of the top left corner of the rectangle.
+	 * @param y The y-coordinate of the top left corner of the rectangle.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 */
+	public void pixelsChanged(int x, int y, int width, int height) {
+		mipLevels = null;
+		Rectangle region = new Rectangle(x, y, width, height).intersection(
+				new Rectangle(getWidth(), getHeight()));
+		if (region.isEmpty())
+			return;
+		synchronized (this)
+		{
+			Rectangle changed = changedRegion;
+			changedRegion = changed == null ? region : changed.union(region);
+		}
+	}
+
+	/**
+	 * Returns the region changed since this method was last called, and
+	 * 	starts collecting changes again from nothing. Displays use it to
+	 * 	redraw only the pixels that changed. Changes made through
+	 * 	getRaster or a Graphics are only included if pixelsChanged was
+	 * 	called for them.
+	 * 
+	 * @return The smallest rectangle holding every changed pixel, or null
+	 * 	if no pixels are known to have changed.
+	 */
+	public synchronized Rectangle takeChangedRegion() {
+		Rectangle changed = changedRegion;
+		changedRegion = null;
+		return changed;
+	}
+
+	/**
+	 * @return The number of levels getMipLevel can return: level 0 is this
+	 * 	SimplePicture and the last level is 1 pixel wide or high.
+	 */
+	public int getMipLevelCount() {
+		int levels = 1;
+		for (int width = getWidth(), height = getHeight();
+				width > 1 && height > 1; width /= 2, height /= 2)
+			levels++;
+		return levels;
+	}
+
+	/**
+	 * Returns a copy of this SimplePicture reduced by a power of two.
+	 * 	Each level halves the width and height of the one before, rounding
+	 * 	down, and each of its pixels is the average of a 2 by 2 square of
+	 * 	pixels in the level before. Levels are built the first time they
+	 * 	are asked for and kept until the pixels of this SimplePicture
+	 * 	change, so repeated zooming out and thumbnails are cheap.
+	 * 
+	 * @param level The level, from 0 (this SimplePicture) to
+	 * 	getMipLevelCount() - 1.
+	 * 
+	 * @return The reduced copy. It must not be changed.
+	 */
+	public SimplePicture getMipLevel(int level) {
+		if (level < 0 || level >= getMipLevelCount())
+			throw new IllegalArgumentException("no mip level " + level);
+		if (level == 0)
+			return this;
+
+		synchronized (this)
+		{
+			SimplePicture[] levels = mipLevels;
+			if (levels == null)
+			{
+				levels = new SimplePicture[getMipLevelCount() - 1];
+				mipLevels = levels;
+			}
+			if (levels[level - 1] == null)
+				levels[level - 1] = getMipLevel(level - 1).halve();
+			return levels[level - 1];
+		}
+	}
+
+	/**
+	 * Returns the smallest level of getMipLevel that is at least as high
+	 * 	as the height provided, to scale down from.
+	 * 
+	 * @param height The height wanted.
+	 * 
+	 * @return The level to scale from.
+	 */
+	private SimplePicture getMipLevelAbove(int height) {
+		int level = 0;
+		for (int levelHeight = getHeight() / 2;
+				level + 1 < getMipLevelCount() && levelHeight >= height;
+				levelHeight /= 2)
+			level++;
+		return getMipLevel(level);
+	}
+
+	/**
+	 * @return A SimplePicture half as wide and high as this one, each of
+	 * 	whose pixels is the rounded average of 2 by 2 of these.
+	 */
+	private SimplePicture halve() {
+		final int width = getWidth();
+		final int newWidth = Math.max(width / 2, 1);
+		int newHeight = Math.max(getHeight() / 2, 1);
+		final int maxX = width - 1;
+		final int maxY = getHeight() - 1;
+		final int[] source = raster;
+		final int mask = alphaMask;
+
+		SimplePicture result = new SimplePicture(new BufferedImage(newWidth,
+				newHeight, bufferedImage.getType()));
+		final int[] target = result.raster;
+
+		BandExecutor.run(newWidth, newHeight, new BandExecutor.Band() {
+			public void run(int startY, int endY) {
+				for (int y = startY; y < endY; y++)
+				{
+					int top = 2 * y * width;
+					int bottom = Math.min(2 * y + 1, maxY) * width;
+					int to = y * newWidth;
+					for (int x = 0; x < newWidth; x++)
+					{
+						int left = 2 * x;
+						int right = Math.min(left + 1, maxX);
+						int a = source[top + left] | mask;
+						int b = source[top + right] | mask;
+						int c = source[bottom + left] | mask;
+						int d = source[bottom + right] | mask;
+
+						// Average two channels at a time.
+						int evens = ((a & 0xff00ff) + (b & 0xff00ff)
+								+ (c & 0xff00ff) + (d & 0xff00ff)
+								+ 0x20002) >>> 2 & 0xff00ff;
+						int odds = ((a >>> 8 & 0xff00ff)
+								+ (b >>> 8 & 0xff00ff) + (c >>> 8 & 0xff00ff)
+								+ (d >>> 8 & 0xff00ff) + 0x20002) >>> 2
+								& 0xff00ff;
+						target[to + x] = odds << 8 | evens;
+					}
+				}
+			}
+		});
+		return result;
+	}
+
 	/**
 	 * @return A Graphics object to be used by this SimplePicture for drawing.
 	 */
@@ -269,7 +790,7 @@ public class SimplePicture
 	 * 	blue, each occupying 8 bits each.
 	 */
 	public int getBasicPixel(int x, int y) {
-		return bufferedImage.getRGB(x, y);
+		return raster[index(x, y)] | alphaMask;
 	}
 
 	/** 
@@ -280,7 +801,29 @@ public class SimplePicture
 	 * @param rgb The new RGB value of the pixel (alpha, red, green, blue).
 	 */     
 	public void setBasicPixel(int x, int y, int rgb) {
-		bufferedImage.setRGB(x, y, rgb);
+		raster[index(x, y)] = rgb;
+		if (mipLevels != null)
+			mipLevels = null;
+
+		// Pixels set in order mostly fall inside the region already, so
+		// it only rarely needs to grow.
+		Rectangle changed = changedRegion;
+		if (changed == null || !changed.contains(x, y))
+			pixelsChanged(x, y, 1, 1);
+	}
+
+	/**
+	 * @param x The x-coordinate of the pixel.
+	 * @param y The y-coordinate of the pixel.
+	 * 
+	 * @return The index of the pixel in the raster.
+	 */
+	private int index(int x, int y) {
+		int width = getWidth();
+		if (x < 0 || y < 0 || x >= width || y >= getHeight())
+			throw new ArrayIndexOutOfBoundsException(
+					"Coordinate out of bounds!");
+		return y * width + x;
 	}
 
 	/**
@@ -308,6 +851,7 @@ public class SimplePicture
 		/* Draw the Image on the BufferedImage
 		 * starting at (0,0). */
 		graphics2d.drawImage(image, 0, 0, null);
+		pixelsChanged();
 
 		// Show the new image.
 		show();
@@ -391,7 +935,16 @@ public class SimplePicture
 					" could not be opened. " +
 			"Check to see that you can read to the directory.");
 
-		bufferedImage = ImageIO.read(file);
+		// Uncompressed BMPs are mapped straight into a raster; any other
+		// file is left to ImageIO.
+		BufferedImage image = BmpCodec.read(file);
+		if (image == null)
+			image = ImageIO.read(file);
+		if (image == null)
+			throw new IOException(this.fileName +
+					" is not in a supported image format.");
+
+		setBufferedImage(toPackedImage(image));
 	}
 
 	/**
@@ -446,6 +999,7 @@ public class SimplePicture
 
 		// Draw the message.
 		graphics2d.drawString(message, xPos, yPos);
+		pixelsChanged();
 
 	}
 
@@ -463,28 +1017,40 @@ public class SimplePicture
 	/**
 	 * Creates a new SimplePicture with the height provided. 
 	 * The aspect ratio of the width and height will stay the same.
+	 * Smaller pictures are scaled from the nearest level of getMipLevel
+	 * 	that is at least as large, with bilinear filtering.
 	 * 
 	 * @param height The desired height.
 	 * 
 	 * @return The resulting SimplePicture.
 	 */
 	public SimplePicture getPictureWithHeight(int height) {
-		// Set up the scale transform.
-		double yFactor = (double) height / this.getHeight();
-		AffineTransform scaleTransform = new AffineTransform();
-		scaleTransform.scale(yFactor,yFactor);
-
 		// Create a new SimplePicture object of the right size.
+		double yFactor = (double) height / this.getHeight();
 		SimplePicture result =
-			new SimplePicture((int) (getWidth() * yFactor),
-					(int) (getHeight() * yFactor));
+			new SimplePicture((int) (getWidth() * yFactor), height);
+
+		// Set up the scale transform from the nearest mip level. Mip
+		// widths and heights are rounded down separately, so each axis
+		// gets its own factor to fill the whole result.
+		SimplePicture source = getMipLevelAbove(height);
+		AffineTransform scaleTransform = new AffineTransform();
+		if (source == this)
+			scaleTransform.scale(yFactor, yFactor);
+		else
+			scaleTransform.scale(
+					(double) result.getWidth() / source.getWidth(),
+					(double) result.getHeight() / source.getHeight());
 
 		// Get the Graphics2D object to draw on the result.
 		Graphics graphics = result.getGraphics();
 		Graphics2D g2 = (Graphics2D) graphics;
 
 		// Draw the current Image onto the result image.
-		g2.drawImage(this.getImage(), scaleTransform, null);
+		if (source != this)
+			g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g2.drawImage(source.getImage(), scaleTransform, null);
 
 		return result;
 	}
@@ -534,9 +1100,12 @@ public class SimplePicture
 		if (posDot >= 0)
 			extension = fileName.substring(posDot + 1);
 
-		/* Write the contents of the BufferedImage to the file
-		 * as JPEG. */
-		ImageIO.write(bufferedImage, extension, file);
+		/* Write the contents of the BufferedImage to the file,
+		 * directly for BMPs and through ImageIO otherwise. */
+		if ("bmp".equalsIgnoreCase(extension))
+			BmpCodec.write(raster, getWidth(), getHeight(), file);
+		else
+			ImageIO.write(bufferedImage, extension, file);
 	}
 
 	/**
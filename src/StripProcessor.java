@@ -0,0 +1,92 @@
+package src;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Applies a PictureFilter to a BMP file too large to load, by reading it
+ * 	in horizontal strips and writing each filtered strip to the output
+ * 	file before reading the next. Each strip is read together with the
+ * 	filter's halo of rows above and below it, so the output is the same
+ * 	as filtering the whole picture at once, while memory use depends only
+ * 	on the width of the picture, the strip height and the halo.
+ *
+ * The input must be an uncompressed BMP that BmpCodec can read; the
+ * 	output is written as a 24-bit BMP.
+ */
+public class StripProcessor
+{
+
+	//////////////////////////////// Fields ///////////////////////////////////
+
+	/**
+	 * Number of rows filtered at a time by process(input, output, filter).
+	 */
+	public static final int DEFAULT_STRIP_HEIGHT = 256;
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Filters a BMP file strip by strip, using strips of
+	 * 	DEFAULT_STRIP_HEIGHT rows.
+	 *
+	 * @param input The BMP file to filter.
+	 * @param output The file to write the result to.
+	 * @param filter The filter to apply.
+	 *
+	 * @throws IOException If the input is not a readable uncompressed BMP
+	 * 	or the output cannot be written.
+	 */
+	public static void process(File input, File output, PictureFilter filter)
+			throws IOException {
+		process(input, output, filter, DEFAULT_STRIP_HEIGHT);
+	}
+
+	/**
+	 * Filters a BMP file strip by strip.
+	 *
+	 * @param input The BMP file to filter.
+	 * @param output The file to write the result to. It must not be the
+	 * 	input file.
+	 * @param filter The filter to apply.
+	 * @param stripHeight The number of rows to filter at a time.
+	 *
+	 * @throws IOException If the input is not a readable uncompressed BMP
+	 * 	or the output cannot be written.
+	 */
+	public static void process(File input, File output, PictureFilter filter,
+			int stripHeight) throws IOException {
+		if (stripHeight < 1)
+			throw new IllegalArgumentException("stripHeight must be positive");
+		BmpCodec.Reader reader = BmpCodec.Reader.open(input);
+		if (reader == null)
+			throw new IOException(input + " is not an uncompressed BMP.");
+		try {
+			int width = reader.getWidth();
+			int height = reader.getHeight();
+			int halo = filter.halo();
+			BmpCodec.Writer writer = new BmpCodec.Writer(output, width, height);
+			try {
+				for (int y = 0; y < height; y += stripHeight) {
+					int rows = Math.min(stripHeight, height - y);
+					int top = Math.max(0, y - halo);
+					int bottom = (int) Math.min(height, (long) y + rows + halo);
+
+					Picture strip = new Picture(width, bottom - top);
+					reader.readRows(top, bottom - top, strip.getRaster(), 0);
+					Picture result = filter.apply(strip);
+					if (result.getWidth() != width
+							|| result.getHeight() != bottom - top)
+						throw new IllegalArgumentException(
+								"the filter changed the size of the picture");
+					writer.writeRows(y, rows, result.getRaster(),
+							(y - top) * width);
+				}
+			} finally {
+				writer.close();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+} // End of StripProcessor class.
@@ -0,0 +1,190 @@
+package src;
+
+/**
+ * Computes the blur used by Picture.blur with a sliding summed-area table.
+ * 	Instead of rescanning the (2 * range + 1) square around every pixel,
+ * 	the red, green and blue values of each column are kept as running sums
+ * 	over the rows currently inside the square. For each row, a prefix sum
+ * 	over those column sums then gives the total of any horizontal run in
+ * 	constant time, so every output pixel costs O(1) no matter how large
+ * 	the range is.
+ *
+ * Pixels outside the picture are ignored, exactly as in
+ * 	Picture.averagePatch: each output pixel is the average of the pixels
+ * 	of the square that fall inside the picture, with each channel
+ * 	truncated by integer division.
+ *
+ * blurInPlace gives the same result without a second array: the column
+ * 	sums only ever need the original values of rows the square has
+ * 	already moved past, so those are kept in a rolling buffer of
+ * 	range + 1 rows before being overwritten.
+ */
+public class SummedAreaBlur
+{
+
+	///////////////////////////////// Methods /////////////////////////////////
+
+	/**
+	 * Blurs a packed pixel array into another.
+	 *
+	 * @param source The pixels to blur, one int per pixel in row-major
+	 * 	order with red, green and blue occupying 8 bits each.
+	 * @param target The array to write the blurred pixels to. It must not
+	 * 	be the same array as source.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param range Half the side of the blurring square, not counting
+	 * 	the center pixel.
+	 */
+	public static void blur(int[] source, int[] target, int width,
+			int height, int range) {
+		Window window = new Window(width, height, range);
+
+		// Fill the column sums with the rows the first square covers.
+		for (int y = 0; y <= range && y < height; y++) {
+			window.addRow(source, y * width, 1);
+		}
+
+		for (int y = 0; y < height; y++) {
+			FilterProgress.checkpoint(y, height);
+			// Slide the square down: the top row leaves, a new row enters.
+			if (y > 0) {
+				int leaving = y - range - 1;
+				int entering = y + range;
+				if (leaving >= 0) {
+					window.addRow(source, leaving * width, -1);
+				}
+				if (entering < height) {
+					window.addRow(source, entering * width, 1);
+				}
+			}
+			window.writeRow(target, y);
+		}
+	}
+
+	/**
+	 * Blurs a packed pixel array in place, with the same result as blur.
+	 * 	Besides a few arrays the width of the picture, it only needs room
+	 * 	for range + 1 rows, or for the whole picture if that is smaller.
+	 *
+	 * @param pixels The pixels to blur, in the format blur takes. They are
+	 * 	replaced by the blurred pixels.
+	 * @param width The width of the picture in pixels.
+	 * @param height The height of the picture in pixels.
+	 * @param range Half the side of the blurring square, not counting
+	 * 	the center pixel.
+	 */
+	public static void blurInPlace(int[] pixels, int width, int height,
+			int range) {
+		Window window = new Window(width, height, range);
+
+		// The original values of the last rows written, which the square
+		// may still cover; row y is kept at (y % savedRows) * width.
+		int savedRows = Math.max(Math.min(range, height - 1) + 1, 1);
+		int[] saved = new int[savedRows * width];
+
+		for (int y = 0; y <= range && y < height; y++) {
+			window.addRow(pixels, y * width, 1);
+		}
+
+		for (int y = 0; y < height; y++) {
+			FilterProgress.checkpoint(y, height);
+			if (y > 0) {
+				int leaving = y - range - 1;
+				int entering = y + range;
+				if (leaving >= 0) {
+					window.addRow(saved, (leaving % savedRows) * width, -1);
+				}
+				if (entering < height) {
+					window.addRow(pixels, entering * width, 1);
+				}
+			}
+			System.arraycopy(pixels, y * width, saved,
+					(y % savedRows) * width, width);
+			window.writeRow(pixels, y);
+		}
+	}
+
+	////////////////////////////// Inner Classes //////////////////////////////
+
+	/**
+	 * The running sums of the square as it slides down the picture.
+	 */
+	private static class Window
+	{
+		private final int width;
+		private final int height;
+		private final int range;
+
+		// Running sums of each column over the rows inside the square.
+		private final int[] columnReds;
+		private final int[] columnGreens;
+		private final int[] columnBlues;
+
+		// Prefix sums of the column sums; entry x covers columns [0, x).
+		private final long[] rowReds;
+		private final long[] rowGreens;
+		private final long[] rowBlues;
+
+		Window(int width, int height, int range) {
+			this.width = width;
+			this.height = height;
+			this.range = range;
+			columnReds = new int[width];
+			columnGreens = new int[width];
+			columnBlues = new int[width];
+			rowReds = new long[width + 1];
+			rowGreens = new long[width + 1];
+			rowBlues = new long[width + 1];
+		}
+
+		/**
+		 * Adds (or removes) one row of the picture to the column sums.
+		 *
+		 * @param source The packed pixels holding the row.
+		 * @param offset The index of the first pixel of the row.
+		 * @param sign 1 to add the row, -1 to remove it.
+		 */
+		void addRow(int[] source, int offset, int sign) {
+			for (int x = 0; x < width; x++) {
+				int value = source[offset + x];
+				columnReds[x] += sign * ((value >> 16) & 0xff);
+				columnGreens[x] += sign * ((value >> 8) & 0xff);
+				columnBlues[x] += sign * (value & 0xff);
+			}
+		}
+
+		/**
+		 * Writes one row of the blurred picture, whose square the column
+		 * 	sums must cover.
+		 *
+		 * @param target The array to write the blurred pixels to.
+		 * @param y The row to write.
+		 */
+		void writeRow(int[] target, int y) {
+			int rows = Math.min(height - 1, y + range)
+					- Math.max(0, y - range) + 1;
+
+			for (int x = 0; x < width; x++) {
+				rowReds[x + 1] = rowReds[x] + columnReds[x];
+				rowGreens[x + 1] = rowGreens[x] + columnGreens[x];
+				rowBlues[x + 1] = rowBlues[x] + columnBlues[x];
+			}
+
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				int left = Math.max(0, x - range);
+				int right = Math.min(width - 1, x + range) + 1;
+				long totPixels = (long) (right - left) * rows;
+				int red = (int) ((rowReds[right] - rowReds[left]) / totPixels);
+				int green = (int) ((rowGreens[right] - rowGreens[left])
+						/ totPixels);
+				int blue = (int) ((rowBlues[right] - rowBlues[left])
+						/ totPixels);
+				target[offset + x] = 0xff000000 | (red << 16) | (green << 8)
+						| blue;
+			}
+		}
+	}
+
+} // End of SummedAreaBlur class.